@@ -0,0 +1,109 @@
+package org.cis120;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the two ways of building and dispatching a {@link Broadcast} that
+ * sends one line to every member of a channel: {@code nickname}, the public
+ * factory method that addresses each recipient by nickname and is resolved
+ * to user IDs at dispatch, and {@code userId}, the one line and array of
+ * recipients the model builds.
+ *
+ * {@code names} builds the responses to a join, with the channel's
+ * {@code NAMES} line for the user who joined; in the {@code userId} form the
+ * payload comes ready-made from the channel, as it does in the model.
+ * {@code responses} builds the map of responses that
+ * {@link Broadcast#getResponses} returns.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BroadcastBenchmark {
+
+    @Param({ "10", "1000", "10000" })
+    public int recipients;
+
+    @Param({ "nickname", "userId" })
+    public String addressing;
+
+    private ServerModel model;
+    private Command message;
+    private Command join;
+    private String namesPayload;
+    private List<String> nicknames;
+    private int[] userIds;
+    private final Counter counter = new Counter();
+
+    /**
+     * Counts the responses visited, so that dispatch cannot be optimized away.
+     */
+    static final class Counter implements Broadcast.Visitor {
+        private long responses;
+        private long userIds;
+
+        @Override
+        public void visit(int userId, String response) {
+            responses++;
+            userIds += userId;
+        }
+
+        long get() {
+            return responses + userIds;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        model = new ServerModel();
+        nicknames = new ArrayList<>(recipients);
+        userIds = new int[recipients];
+        for (int i = 0; i < recipients; i++) {
+            model.registerUser(i);
+            nicknames.add(model.getNickname(i));
+            userIds[i] = i;
+        }
+        message = new MessageCommand(0, "User0", "java", "hello");
+        join = new JoinCommand(recipients - 1, nicknames.get(recipients - 1), "java");
+        Channel channel = new Channel(0, nicknames.get(0), false);
+        for (int i = 1; i < recipients; i++) {
+            channel.addUser(i, nicknames.get(i));
+        }
+        namesPayload = channel.getNamesPayload();
+    }
+
+    @Benchmark
+    public long dispatch() {
+        Broadcast broadcast;
+        if (addressing.equals("nickname")) {
+            broadcast = Broadcast.okay(message, nicknames);
+        } else {
+            broadcast = Broadcast.okay(message, userIds, model);
+        }
+        broadcast.forEachResponse(model, counter);
+        return counter.get();
+    }
+
+    @Benchmark
+    public Broadcast names() {
+        if (addressing.equals("nickname")) {
+            return Broadcast.names(join, nicknames, nicknames.get(0));
+        }
+        return Broadcast.names(join, userIds, recipients - 1, namesPayload, model);
+    }
+
+    @Benchmark
+    public Map<Integer, List<String>> responses() {
+        if (addressing.equals("nickname")) {
+            return Broadcast.okay(message, nicknames).getResponses(model);
+        }
+        return Broadcast.okay(message, userIds, model).getResponses(model);
+    }
+}
@@ -0,0 +1,30 @@
+package org.cis120;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link CommandParser#parse} on a typical {@code MESG}, on
+ * commands of each other arity, and on a line that is not a command. Run with {@code -prof gc}
+ * to see how much each allocates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandParserBenchmark {
+
+    @Param({
+        "MESG java :hello there, how is everyone doing today?", "JOIN java", "NICK cis120",
+        "CREATE java 1", "KICK java User1", "HELLO"
+    })
+    public String line;
+
+    @Benchmark
+    public Command parse() {
+        return CommandParser.parse(0, "User0", line);
+    }
+}
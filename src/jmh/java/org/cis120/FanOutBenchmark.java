@@ -0,0 +1,68 @@
+package org.cis120;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the model-thread cost of one {@code MESG} to a channel: applying
+ * the command and visiting its responses by user ID, as the backend's
+ * dispatcher does. The channel's size is fixed while the number of other
+ * users registered on the server varies, so the score should not depend on
+ * {@code users}.
+ *
+ * {@code joinAndLeave} has one more user join the channel, which renders the
+ * channel's {@code NAMES} line, and leave it again.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FanOutBenchmark {
+
+    @Param({ "1000", "10000", "100000" })
+    public int users;
+
+    @Param({ "100" })
+    public int members;
+
+    private ServerModel model;
+    private Command message;
+    private Command join;
+    private Command leave;
+    private final BroadcastBenchmark.Counter counter = new BroadcastBenchmark.Counter();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        model = new ServerModel();
+        for (int i = 0; i < users; i++) {
+            model.registerUser(i);
+        }
+        new CreateCommand(0, "User0", "java", false).updateServerModel(model);
+        // Spread the members over the whole range of registered users
+        int stride = users / members;
+        for (int i = 1; i < members; i++) {
+            int userId = i * stride;
+            new JoinCommand(userId, "User" + userId, "java").updateServerModel(model);
+        }
+        message = new MessageCommand(0, "User0", "java", "hello");
+        model.registerUser(users);
+        join = new JoinCommand(users, "User" + users, "java");
+        leave = new LeaveCommand(users, "User" + users, "java");
+    }
+
+    @Benchmark
+    public long message() {
+        message.updateServerModel(model).forEachResponse(model, counter);
+        return counter.get();
+    }
+
+    @Benchmark
+    public Broadcast joinAndLeave() {
+        Broadcast joined = join.updateServerModel(model);
+        leave.updateServerModel(model);
+        return joined;
+    }
+}
@@ -0,0 +1,139 @@
+package org.cis120;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures every {@link ServerModel} mutator, including building the
+ * {@link Broadcast} it returns but not dispatching it, against a model with
+ * {@code users} registered users and {@code channels} public channels of
+ * {@code members} users each. Channel {@code c<k>} holds the users from
+ * {@code k * members} onwards, wrapping around, so with fewer users than
+ * memberships every user is in several channels.
+ *
+ * Each benchmark undoes its own change, so the model is the same size on
+ * every invocation: an extra user, who is in no channel between invocations,
+ * joins and leaves, and user 0, who owns {@code c0} and a private channel of
+ * the same size, changes their nickname and back. With this many
+ * combinations, pick the ones to run with {@code -p}, for instance
+ * {@code -Djmh.args="ServerModel -p users=10000"}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServerModelBenchmark {
+
+    @Param({ "1000", "100000" })
+    public int users;
+
+    @Param({ "10", "1000" })
+    public int channels;
+
+    @Param({ "10", "1000" })
+    public int members;
+
+    private ServerModel model;
+    private int extraId;
+
+    private Command nick;
+    private Command nickBack;
+    private Command create;
+    private Command leaveCreated;
+    private Command join;
+    private Command leave;
+    private Command message;
+    private Command invite;
+    private Command kick;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        model = new ServerModel();
+        for (int i = 0; i < users; i++) {
+            model.registerUser(i);
+        }
+        int size = Math.min(members, users);
+        for (int k = 0; k < channels; k++) {
+            String channel = "c" + k;
+            int ownerId = (k * size) % users;
+            new CreateCommand(ownerId, model.getNickname(ownerId), channel, false)
+                    .updateServerModel(model);
+            for (int j = 1; j < size; j++) {
+                int userId = (k * size + j) % users;
+                new JoinCommand(userId, model.getNickname(userId), channel)
+                        .updateServerModel(model);
+            }
+        }
+        String owner = model.getNickname(0);
+        new CreateCommand(0, owner, "secret", true).updateServerModel(model);
+        for (int j = 1; j < size; j++) {
+            new InviteCommand(0, owner, "secret", model.getNickname(j)).updateServerModel(model);
+        }
+
+        extraId = users;
+        model.registerUser(extraId);
+        String extra = model.getNickname(extraId);
+        nick = new NicknameCommand(0, owner, "bench");
+        nickBack = new NicknameCommand(0, "bench", owner);
+        create = new CreateCommand(extraId, extra, "bench", false);
+        leaveCreated = new LeaveCommand(extraId, extra, "bench");
+        join = new JoinCommand(extraId, extra, "c0");
+        leave = new LeaveCommand(extraId, extra, "c0");
+        message = new MessageCommand(0, owner, "c0", "hello");
+        invite = new InviteCommand(0, owner, "secret", extra);
+        kick = new KickCommand(0, owner, "secret", extra);
+    }
+
+    /** {@code registerUser} and {@code deregisterUser} of a user in no channel. */
+    @Benchmark
+    public void registerAndQuit(Blackhole blackhole) {
+        blackhole.consume(model.deregisterUser(extraId));
+        blackhole.consume(model.registerUser(extraId));
+    }
+
+    /** {@code deregisterUser} of a member of {@code c0}, who then reconnects. */
+    @Benchmark
+    public void joinAndQuit(Blackhole blackhole) {
+        blackhole.consume(join.updateServerModel(model));
+        blackhole.consume(model.deregisterUser(extraId));
+        blackhole.consume(model.registerUser(extraId));
+    }
+
+    /** {@code changeNickname} of the owner of {@code c0} and {@code secret}. */
+    @Benchmark
+    public void nickAndBack(Blackhole blackhole) {
+        blackhole.consume(nick.updateServerModel(model));
+        blackhole.consume(nickBack.updateServerModel(model));
+    }
+
+    /** {@code createChannel}, and the {@code leaveChannel} that removes it. */
+    @Benchmark
+    public void createAndLeave(Blackhole blackhole) {
+        blackhole.consume(create.updateServerModel(model));
+        blackhole.consume(leaveCreated.updateServerModel(model));
+    }
+
+    /** {@code joinChannel} and {@code leaveChannel} of {@code c0}. */
+    @Benchmark
+    public void joinAndLeave(Blackhole blackhole) {
+        blackhole.consume(join.updateServerModel(model));
+        blackhole.consume(leave.updateServerModel(model));
+    }
+
+    /** {@code sendMessage} to {@code c0}. */
+    @Benchmark
+    public Broadcast message() {
+        return message.updateServerModel(model);
+    }
+
+    /** {@code inviteUser} to and {@code kickUser} from {@code secret}. */
+    @Benchmark
+    public void inviteAndKick(Blackhole blackhole) {
+        blackhole.consume(invite.updateServerModel(model));
+        blackhole.consume(kick.updateServerModel(model));
+    }
+}
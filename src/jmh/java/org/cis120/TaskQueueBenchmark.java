@@ -0,0 +1,90 @@
+package org.cis120;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the queues that can sit between the networking threads and the
+ * model thread ({@code pennpals.model.queue}).
+ *
+ * {@code transfer} runs three producers against one consumer, as several
+ * networking threads feed the model thread; its {@code taken} counter is the
+ * number of tasks that made it across. Producers and consumer wait at most
+ * 100 microseconds at a time, so each wait strategy is exercised without a
+ * thread blocking past the end of an iteration. {@code roundTrip} offers and
+ * polls one task on a single thread, the uncontended cost of each queue.
+ *
+ * The linked queue is bounded to the same capacity as the ring buffer so that
+ * producers cannot outrun the consumer without limit; that does not change
+ * how it allocates or locks.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskQueueBenchmark {
+
+    private static final int CAPACITY = 65536;
+    private static final Object TASK = new Object();
+
+    @Param({ "linked", "ring-park", "ring-yield", "ring-spin" })
+    public String queue;
+
+    private BlockingQueue<Object> tasks;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        if (queue.equals("linked")) {
+            tasks = new LinkedBlockingQueue<>(CAPACITY);
+        } else {
+            String strategy = queue.substring(queue.indexOf('-') + 1).toUpperCase();
+            tasks = new RingBufferQueue<>(
+                    CAPACITY, RingBufferQueue.WaitStrategy.valueOf(strategy)
+            );
+        }
+    }
+
+    /**
+     * Tasks taken by the consumer of a {@code transfer} group.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Taken {
+        public long taken;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            taken = 0;
+        }
+    }
+
+    @Benchmark
+    @Group("transfer")
+    @GroupThreads(3)
+    public boolean produce() throws InterruptedException {
+        return tasks.offer(TASK, 100, TimeUnit.MICROSECONDS);
+    }
+
+    @Benchmark
+    @Group("transfer")
+    @GroupThreads(1)
+    public Object consume(Taken counter) throws InterruptedException {
+        Object task = tasks.poll(100, TimeUnit.MICROSECONDS);
+        if (task != null) {
+            counter.taken++;
+        }
+        return task;
+    }
+
+    @Benchmark
+    @Group("roundTrip")
+    public Object roundTrip() {
+        tasks.offer(TASK);
+        return tasks.poll();
+    }
+}
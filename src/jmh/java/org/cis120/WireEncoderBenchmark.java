@@ -0,0 +1,43 @@
+package org.cis120;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares rendering a {@code MESG} line and an {@code ERROR} line with
+ * {@code String.format}, as the server used to, against {@link WireEncoder}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireEncoderBenchmark {
+
+    private String sender = "User1234";
+    private String channel = "java";
+    private String message = "hello there, how is everyone doing today?";
+    private int code = ServerResponse.USER_NOT_IN_CHANNEL.getCode();
+
+    @Benchmark
+    public String formatMessage() {
+        return String.format(":%s MESG %s :%s", sender, channel, message);
+    }
+
+    @Benchmark
+    public String encodeMessage() {
+        return WireEncoder.message(sender, channel, message);
+    }
+
+    @Benchmark
+    public String formatError() {
+        return String.format(":%s ERROR %d", sender, code);
+    }
+
+    @Benchmark
+    public String encodeError() {
+        return WireEncoder.error(sender, code);
+    }
+}
@@ -0,0 +1,98 @@
+package org.cis120;
+
+/**
+ * A {@code LatencyHistogram} counts latencies in microseconds, in buckets
+ * that are exact below 64 µs and otherwise about 3% wide, so that millions of
+ * deliveries can be recorded in a few kilobytes and their percentiles read
+ * off afterwards. Latencies above about 19 hours are counted as 19 hours.
+ *
+ * A histogram is not thread-safe: each {@link LoadGenerator} reader records
+ * into its own, and they are merged once the readers have finished.
+ */
+final class LatencyHistogram {
+
+    // Each power of two from 64 upwards is split into this many buckets
+    private static final int SUB_BUCKETS = 32;
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final long MAX_TRACKABLE = (1L << 36) - 1;
+
+    private final int[] counts;
+    private long total;
+    private long max;
+
+    LatencyHistogram() {
+        counts = new int[indexOf(MAX_TRACKABLE) + 1];
+        total = 0;
+        max = 0;
+    }
+
+    /**
+     * @param micros A latency in microseconds; negative latencies count as 0
+     */
+    void record(long micros) {
+        long value = Math.min(Math.max(micros, 0), MAX_TRACKABLE);
+        counts[indexOf(value)]++;
+        total++;
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds every latency recorded by another histogram to this one.
+     */
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    long getCount() {
+        return total;
+    }
+
+    long getMax() {
+        return max;
+    }
+
+    /**
+     * @param percentile Between 0 and 100
+     * @return The highest latency in the bucket holding the given percentile,
+     *         so never less than the true value, or 0 if nothing was recorded
+     */
+    long getValueAtPercentile(double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), max);
+            }
+        }
+        return max;
+    }
+
+    // ==========================================================================
+    // Private utility methods
+    // ==========================================================================
+
+    private static int indexOf(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKETS * shift + (int) (value >>> shift);
+    }
+
+    private static long highestValueOf(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index - SUB_BUCKETS * shift;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
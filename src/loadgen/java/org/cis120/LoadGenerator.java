@@ -0,0 +1,519 @@
+package org.cis120;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The {@code LoadGenerator} drives a running server over TCP, the way many
+ * PennPals clients would, and reports how many messages it sustains and how
+ * long they take to be delivered. See {@code docs/load-generator.md}.
+ *
+ * Every client connects and takes the nickname {@code lg<i>}. The first
+ * {@code channels} clients each CREATE a channel, and every other client
+ * JOINs one of them in turn. The first {@code senders} clients then send
+ * commands at the requested rate: mostly MESGs to their own channel, mixed
+ * with NICKs and with JOINs and LEAVEs of another channel if asked for.
+ *
+ * Each MESG carries the time it was due to be sent. Every client has a reader
+ * thread that takes that time from each MESG it receives, so latency runs
+ * from when the message should have left to when each member got it, and a
+ * server that falls behind the schedule is charged for the delay.
+ */
+public final class LoadGenerator {
+
+    // Reader threads only hold a BufferedReader, so a small stack lets
+    // thousands of them run side by side
+    private static final long READER_STACK_SIZE = 256 * 1024;
+    private static final long SETUP_TIMEOUT_SECONDS = 30;
+    private static final long PROGRESS_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final LoadOptions options;
+    private final Client[] clients;
+    private final int[] channelSizes;
+    private final String padding;
+
+    // Start and end of the measured window, in System.nanoTime()
+    private volatile long windowStart;
+    private volatile long windowEnd;
+
+    private final LongAdder commandsSent = new LongAdder();
+    private final LongAdder messagesSent = new LongAdder();
+    private final LongAdder nicksSent = new LongAdder();
+    private final LongAdder joinsSent = new LongAdder();
+    private final LongAdder expected = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder disconnected = new LongAdder();
+
+    private volatile boolean closing;
+
+    private LoadGenerator(LoadOptions options) {
+        this.options = options;
+        clients = new Client[options.getConnections()];
+        channelSizes = new int[options.getChannels()];
+        for (int i = 0; i < clients.length; i++) {
+            channelSizes[homeChannelOf(i)]++;
+        }
+        // Each payload starts with a timestamp of up to 20 characters and a space
+        char[] filler = new char[Math.max(0, options.getMessageSize() - 21)];
+        Arrays.fill(filler, 'x');
+        padding = new String(filler);
+        windowStart = Long.MAX_VALUE;
+        windowEnd = Long.MAX_VALUE;
+    }
+
+    /**
+     * Runs the load against a server that is already listening.
+     *
+     * @param args Options of the form {@code name=value}; see {@link LoadOptions}
+     */
+    public static void main(String[] args) throws InterruptedException {
+        LoadOptions options;
+        try {
+            options = LoadOptions.fromArguments(args);
+        } catch (IllegalArgumentException iax) {
+            System.err.println(iax.getMessage());
+            System.exit(2);
+            return;
+        }
+        try {
+            new LoadGenerator(options).run();
+        } catch (IOException iox) {
+            System.err.println("Load generator failed: " + iox.getMessage());
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    // ==========================================================================
+    // Phases
+    // ==========================================================================
+
+    private void run() throws IOException, InterruptedException {
+        System.out.println("Load: " + options);
+        long start = System.nanoTime();
+        connect();
+        setUp();
+        settle();
+        System.out.printf(
+                "Set up %d clients in %d channels in %.1f s%n", clients.length,
+                channelSizes.length, (System.nanoTime() - start) / 1e9
+        );
+
+        long loadStart = System.nanoTime();
+        windowStart = loadStart + TimeUnit.SECONDS.toNanos(options.getWarmupSeconds());
+        windowEnd = windowStart + TimeUnit.SECONDS.toNanos(options.getDurationSeconds());
+        Thread[] senders = startSenders(loadStart);
+        reportProgress(loadStart, senders);
+        for (Thread sender : senders) {
+            sender.join();
+        }
+        drain();
+        close();
+        report();
+    }
+
+    private void connect() throws IOException {
+        for (int i = 0; i < clients.length; i++) {
+            clients[i] = new Client(i);
+            Thread reader = new Thread(null, clients[i], "loadgen-reader-" + i, READER_STACK_SIZE);
+            reader.setDaemon(true);
+            clients[i].reader = reader;
+            reader.start();
+        }
+    }
+
+    /**
+     * Names every client and puts it in its channel. Channels are created one
+     * at a time, so that each exists before anyone joins it; the joins are
+     * then all sent before any of them is waited for.
+     */
+    private void setUp() throws IOException, InterruptedException {
+        int channels = channelSizes.length;
+        for (int i = 0; i < channels; i++) {
+            Client client = clients[i];
+            client.expect(":" + client.nickname + " CREATE " + client.channel + " 0");
+            client.write("NICK " + client.nickname + "\nCREATE " + client.channel + " 0\n");
+            client.awaitExpected();
+        }
+        for (int i = channels; i < clients.length; i++) {
+            Client client = clients[i];
+            client.expect(":" + client.nickname + " NAMES " + client.channel + " :");
+            client.write("NICK " + client.nickname + "\nJOIN " + client.channel + "\n");
+        }
+        for (int i = channels; i < clients.length; i++) {
+            clients[i].awaitExpected();
+        }
+    }
+
+    /**
+     * Waits for the JOIN lines that setting up sent to every member to stop
+     * arriving, so that they do not count against the first messages.
+     */
+    private void settle() throws InterruptedException {
+        long last = -1;
+        while (received.sum() != last) {
+            last = received.sum();
+            TimeUnit.MILLISECONDS.sleep(500);
+        }
+    }
+
+    private Thread[] startSenders(final long loadStart) {
+        int threads = options.getThreads();
+        Thread[] senders = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final List<Client> mine = new ArrayList<>();
+            for (int s = t; s < options.getSenders(); s += threads) {
+                mine.add(clients[s]);
+            }
+            final long seed = t;
+            senders[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    send(mine, loadStart, new Random(seed));
+                }
+            }, "loadgen-sender-" + t);
+            senders[t].start();
+        }
+        return senders;
+    }
+
+    /**
+     * Sends commands from the given clients in turn until the measured window
+     * ends. With a rate, the commands are spread evenly over time, and one
+     * that is late is sent at once but keeps its scheduled time.
+     */
+    private void send(List<Client> mine, long loadStart, Random random) {
+        double perThreadRate = (double) options.getRate() / options.getThreads();
+        long interval = perThreadRate > 0 ? (long) (1e9 / perThreadRate) : 0;
+        int nickPercent = options.getNickPercent();
+        int joinPercent = options.getJoinPercent();
+        long due = loadStart;
+        int turn = 0;
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                if (interval > 0) {
+                    while (now < due) {
+                        LockSupport.parkNanos(due - now);
+                        now = System.nanoTime();
+                    }
+                } else {
+                    due = now;
+                }
+                if (due >= windowEnd) {
+                    return;
+                }
+                Client client = mine.get(turn);
+                turn = (turn + 1) % mine.size();
+                boolean measured = due >= windowStart;
+                commandsSent.increment();
+                int roll = random.nextInt(100);
+                if (roll < nickPercent) {
+                    client.changeNickname();
+                    count(nicksSent, measured);
+                } else if (roll < nickPercent + joinPercent) {
+                    client.joinOrLeave(random);
+                    count(joinsSent, measured);
+                } else {
+                    client.message(due);
+                    if (measured) {
+                        messagesSent.increment();
+                        expected.add(channelSizes[homeChannelOf(client.index)]);
+                    }
+                }
+                due += interval;
+            }
+        } catch (IOException iox) {
+            if (!closing) {
+                System.err.println("Sender stopped: " + iox.getMessage());
+            }
+        }
+    }
+
+    private void reportProgress(long loadStart, Thread[] senders) throws InterruptedException {
+        long lastSent = 0;
+        long lastReceived = 0;
+        for (int second = 1; isAnyAlive(senders); second++) {
+            long next = loadStart + TimeUnit.SECONDS.toNanos(second);
+            long now = System.nanoTime();
+            while (now < next && isAnyAlive(senders)) {
+                TimeUnit.NANOSECONDS.sleep(Math.min(next - now, PROGRESS_POLL_NANOS));
+                now = System.nanoTime();
+            }
+            long sent = commandsSent.sum();
+            long lines = received.sum();
+            System.out.printf(
+                    "%4d s %-7s %,10d commands/s %,12d lines received/s%n", second,
+                    now < windowStart ? "warmup" : "measure", sent - lastSent, lines - lastReceived
+            );
+            lastSent = sent;
+            lastReceived = lines;
+        }
+    }
+
+    /**
+     * Waits until the measured messages have all been delivered, or until
+     * deliveries stop arriving for a second, or until the drain time is up.
+     */
+    private void drain() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(options.getDrainSeconds());
+        long last = -1;
+        long lastChange = System.nanoTime();
+        while (System.nanoTime() < deadline) {
+            long now = delivered.sum();
+            if (options.getJoinPercent() == 0 && now >= expected.sum()) {
+                return;
+            }
+            if (now != last) {
+                last = now;
+                lastChange = System.nanoTime();
+            } else if (System.nanoTime() - lastChange > TimeUnit.SECONDS.toNanos(1)) {
+                return;
+            }
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+    }
+
+    private void close() throws InterruptedException {
+        closing = true;
+        for (Client client : clients) {
+            client.close();
+        }
+        for (Client client : clients) {
+            client.reader.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    private void report() {
+        LatencyHistogram latencies = new LatencyHistogram();
+        for (Client client : clients) {
+            latencies.add(client.latencies);
+        }
+        double seconds = options.getDurationSeconds();
+        long messages = messagesSent.sum();
+        long deliveries = delivered.sum();
+        System.out.printf(
+                "Sent      %,d MESG (%,.0f/s), %,d NICK, %,d JOIN/LEAVE%n",
+                messages, messages / seconds, nicksSent.sum(), joinsSent.sum()
+        );
+        if (options.getJoinPercent() == 0) {
+            System.out.printf(
+                    "Delivered %,d of %,d MESG lines (%,.0f/s)%n",
+                    deliveries, expected.sum(), deliveries / seconds
+            );
+        } else {
+            System.out.printf(
+                    "Delivered %,d MESG lines (%,.0f/s)%n", deliveries, deliveries / seconds
+            );
+        }
+        System.out.printf("Errors    %,d; disconnected %,d%n", errors.sum(), disconnected.sum());
+        System.out.printf(
+                "Latency   p50 %s  p90 %s  p99 %s  p99.9 %s  max %s%n",
+                millis(latencies.getValueAtPercentile(50)),
+                millis(latencies.getValueAtPercentile(90)),
+                millis(latencies.getValueAtPercentile(99)),
+                millis(latencies.getValueAtPercentile(99.9)),
+                millis(latencies.getMax())
+        );
+    }
+
+    // ==========================================================================
+    // Clients
+    // ==========================================================================
+
+    /**
+     * One connection to the server. Its reader thread runs {@link #run()};
+     * everything else is called by the main thread during set up and by the
+     * client's sender thread afterwards.
+     */
+    private final class Client implements Runnable {
+
+        private final int index;
+        private final String nickname;
+        private final String channel;
+        private final Socket socket;
+        private final OutputStream out;
+        private final BufferedReader in;
+        private final LatencyHistogram latencies;
+        private Thread reader;
+
+        // The start of the line set up is waiting for, or null
+        private volatile String awaited;
+        private final CountDownLatch ready;
+        private volatile boolean lost;
+
+        // Only touched by the sender thread
+        private boolean renamed;
+        private String visiting;
+
+        Client(int index) throws IOException {
+            this.index = index;
+            nickname = "lg" + index;
+            channel = "c" + homeChannelOf(index);
+            socket = new Socket(options.getHost(), options.getPort());
+            socket.setTcpNoDelay(true);
+            out = new BufferedOutputStream(socket.getOutputStream());
+            in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)
+            );
+            latencies = new LatencyHistogram();
+            ready = new CountDownLatch(1);
+        }
+
+        void expect(String lineStart) {
+            awaited = lineStart;
+        }
+
+        void awaitExpected() throws IOException, InterruptedException {
+            if (!ready.await(SETUP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IOException("Timed out setting up " + nickname);
+            }
+            if (lost) {
+                throw new IOException("Server closed the connection of " + nickname);
+            }
+        }
+
+        void message(long due) throws IOException {
+            write("MESG " + channel + " :" + due + " " + padding + "\n");
+        }
+
+        void changeNickname() throws IOException {
+            renamed = !renamed;
+            write("NICK " + nickname + (renamed ? "n" : "") + "\n");
+        }
+
+        void joinOrLeave(Random random) throws IOException {
+            if (visiting != null) {
+                write("LEAVE " + visiting + "\n");
+                visiting = null;
+                return;
+            }
+            int home = homeChannelOf(index);
+            int other = random.nextInt(channelSizes.length - 1);
+            visiting = "c" + (other >= home ? other + 1 : other);
+            write("JOIN " + visiting + "\n");
+        }
+
+        void write(String commands) throws IOException {
+            out.write(commands.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException iox) {
+                // Already closed
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    received.increment();
+                    handle(line);
+                }
+            } catch (IOException iox) {
+                // Treated like the end of the stream
+            } finally {
+                if (!closing) {
+                    lost = true;
+                    disconnected.increment();
+                }
+                ready.countDown();
+            }
+        }
+
+        private void handle(String line) {
+            String lineStart = awaited;
+            if (lineStart != null && line.startsWith(lineStart)) {
+                awaited = null;
+                ready.countDown();
+                return;
+            }
+            int command = line.indexOf(' ');
+            if (command < 0) {
+                return;
+            }
+            if (line.startsWith(" MESG ", command)) {
+                int payload = line.indexOf(" :", command + 6);
+                long sent = payload < 0 ? Long.MIN_VALUE : parseTime(line, payload + 2);
+                if (sent >= windowStart && sent < windowEnd) {
+                    delivered.increment();
+                    latencies.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sent));
+                }
+            } else if (line.startsWith(" ERROR ", command)) {
+                errors.increment();
+            }
+        }
+    }
+
+    // ==========================================================================
+    // Private utility methods
+    // ==========================================================================
+
+    private int homeChannelOf(int client) {
+        return client % channelSizes.length;
+    }
+
+    private static void count(LongAdder counter, boolean measured) {
+        if (measured) {
+            counter.increment();
+        }
+    }
+
+    private static boolean isAnyAlive(Thread[] threads) {
+        for (Thread thread : threads) {
+            if (thread.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The decimal number at the given position of a line, or
+     *         {@code Long.MIN_VALUE} if there is none
+     */
+    private static long parseTime(String line, int start) {
+        long time = 0;
+        int i = start;
+        boolean negative = i < line.length() && line.charAt(i) == '-';
+        if (negative) {
+            i++;
+        }
+        int digits = i;
+        for (; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            time = time * 10 + (c - '0');
+        }
+        if (i == digits) {
+            return Long.MIN_VALUE;
+        }
+        return negative ? -time : time;
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.2f ms", micros / 1000.0);
+    }
+}
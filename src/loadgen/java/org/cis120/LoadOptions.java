@@ -0,0 +1,196 @@
+package org.cis120;
+
+import java.util.Properties;
+
+/**
+ * A {@code LoadOptions} holds the settings of a {@link LoadGenerator} run.
+ *
+ * Options are given as {@code name=value} arguments, for instance
+ * {@code connections=2000 rate=5000}, and any option that is not given falls
+ * back to its default. Like {@link ServerConfig}, a value that cannot be used
+ * is reported with an {@link IllegalArgumentException} naming the option.
+ */
+final class LoadOptions {
+
+    private static final String[] NAMES = {
+        "host", "port", "connections", "channels", "senders", "threads", "rate",
+        "messageSize", "nickPercent", "joinPercent", "warmup", "duration", "drain"
+    };
+
+    private final Properties properties;
+
+    private LoadOptions(Properties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Reads the options from command-line arguments.
+     *
+     * @param args arguments of the form {@code name=value}
+     * @return the options
+     * @throws IllegalArgumentException if an argument is malformed, names an
+     *                                  unknown option or gives a bad value
+     */
+    static LoadOptions fromArguments(String[] args) {
+        Properties properties = new Properties();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals <= 0) {
+                throw new IllegalArgumentException("Expected name=value but got " + arg);
+            }
+            String name = arg.substring(0, equals);
+            if (!isKnown(name)) {
+                throw new IllegalArgumentException("Unknown option " + name);
+            }
+            properties.setProperty(name, arg.substring(equals + 1));
+        }
+        LoadOptions options = new LoadOptions(properties);
+        options.validate();
+        return options;
+    }
+
+    // ==========================================================================
+    // Options
+    // ==========================================================================
+
+    /** @return the host the server runs on ({@code host}) */
+    String getHost() {
+        return properties.getProperty("host", "127.0.0.1");
+    }
+
+    /** @return the TCP port the server listens on ({@code port}) */
+    int getPort() {
+        return getInt("port", 21212, 1);
+    }
+
+    /** @return the number of clients to connect ({@code connections}) */
+    int getConnections() {
+        return getInt("connections", 1000, 1);
+    }
+
+    /** @return the number of channels the clients are spread over ({@code channels}) */
+    int getChannels() {
+        return getInt("channels", 10, 1);
+    }
+
+    /** @return the number of clients that send commands ({@code senders}) */
+    int getSenders() {
+        return getInt("senders", 10, 1);
+    }
+
+    /** @return the number of threads writing the senders' commands ({@code threads}) */
+    int getThreads() {
+        return getInt("threads", Math.min(getSenders(), 4), 1);
+    }
+
+    /**
+     * @return the commands sent per second by all senders together, or 0 to
+     *         send as fast as the server accepts them ({@code rate})
+     */
+    int getRate() {
+        return getInt("rate", 1000, 0);
+    }
+
+    /**
+     * @return the length of each message payload in characters, of which the
+     *         first 21 or so hold its timestamp ({@code messageSize})
+     */
+    int getMessageSize() {
+        return getInt("messageSize", 32, 1);
+    }
+
+    /** @return the percentage of commands that are a {@code NICK} ({@code nickPercent}) */
+    int getNickPercent() {
+        return getInt("nickPercent", 0, 0);
+    }
+
+    /**
+     * @return the percentage of commands that are a {@code JOIN} of another
+     *         channel or the {@code LEAVE} of it ({@code joinPercent})
+     */
+    int getJoinPercent() {
+        return getInt("joinPercent", 0, 0);
+    }
+
+    /** @return the seconds of load before measuring starts ({@code warmup}) */
+    int getWarmupSeconds() {
+        return getInt("warmup", 5, 0);
+    }
+
+    /** @return the seconds of load that are measured ({@code duration}) */
+    int getDurationSeconds() {
+        return getInt("duration", 20, 1);
+    }
+
+    /** @return the most seconds to wait for messages still in flight ({@code drain}) */
+    int getDrainSeconds() {
+        return getInt("drain", 10, 0);
+    }
+
+    @Override
+    public String toString() {
+        return "connections=" + getConnections() + " channels=" + getChannels()
+                + " senders=" + getSenders() + " threads=" + getThreads()
+                + " rate=" + (getRate() == 0 ? "max" : getRate() + "/s")
+                + " messageSize=" + getMessageSize() + " nickPercent=" + getNickPercent()
+                + " joinPercent=" + getJoinPercent() + " warmup=" + getWarmupSeconds() + "s"
+                + " duration=" + getDurationSeconds() + "s";
+    }
+
+    // ==========================================================================
+    // Private utility methods
+    // ==========================================================================
+
+    private static boolean isKnown(String name) {
+        for (String known : NAMES) {
+            if (known.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void validate() {
+        getHost();
+        getPort();
+        getRate();
+        getMessageSize();
+        getWarmupSeconds();
+        getDurationSeconds();
+        getDrainSeconds();
+        if (getChannels() > getConnections()) {
+            throw new IllegalArgumentException("Option channels must be at most connections");
+        }
+        if (getSenders() > getConnections()) {
+            throw new IllegalArgumentException("Option senders must be at most connections");
+        }
+        if (getThreads() > getSenders()) {
+            throw new IllegalArgumentException("Option threads must be at most senders");
+        }
+        if (getNickPercent() + getJoinPercent() > 100) {
+            throw new IllegalArgumentException(
+                    "Options nickPercent and joinPercent must add up to at most 100"
+            );
+        }
+        if (getJoinPercent() > 0 && getChannels() < 2) {
+            throw new IllegalArgumentException("Option joinPercent needs at least 2 channels");
+        }
+    }
+
+    private int getInt(String key, int defaultValue, int min) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        int result;
+        try {
+            result = Integer.parseInt(value.trim());
+        } catch (NumberFormatException nfx) {
+            throw new IllegalArgumentException("Option " + key + " is not a number: " + value);
+        }
+        if (result < min) {
+            throw new IllegalArgumentException("Option " + key + " must be at least " + min);
+        }
+        return result;
+    }
+}
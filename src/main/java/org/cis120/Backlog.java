@@ -0,0 +1,44 @@
+package org.cis120;
+
+/**
+ * A {@code Backlog} is a point-in-time reading of one client's
+ * {@link OutboundQueue}: how much is waiting to be written to it, and how many
+ * lines the {@link SlowConsumerPolicy} has dropped so far.
+ */
+final class Backlog {
+    private final int userId;
+    private final int lines;
+    private final long bytes;
+    private final long dropped;
+
+    Backlog(int userId, OutboundQueue queue) {
+        this.userId = userId;
+        lines = queue.size();
+        bytes = queue.bytes();
+        dropped = queue.dropped();
+    }
+
+    int getUserId() {
+        return userId;
+    }
+
+    int getLines() {
+        return lines;
+    }
+
+    long getBytes() {
+        return bytes;
+    }
+
+    long getDropped() {
+        return dropped;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "user %d: %d lines, %d bytes queued, %d dropped",
+                userId, lines, bytes, dropped
+        );
+    }
+}
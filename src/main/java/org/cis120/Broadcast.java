@@ -9,16 +9,54 @@ import java.util.*;
  * them of relevant events in their channels. For instance, many chat services
  * inform you when someone has been removed from a chat that you're in.
  *
- * You do not need to modify this file.
+ * The public factory methods address responses by nickname, and the backend
+ * looks each nickname up when it dispatches them. The {@link ServerModel}
+ * instead uses the package-private factory methods that address responses
+ * by user ID, which the backend can dispatch as they are and which stay
+ * correct however nicknames change in the meantime. Almost every such
+ * broadcast sends one line to many users, so it holds that line once with an
+ * array of its recipients, plus any further lines for individual recipients
+ * (the {@code NAMES} line for a user who joins). Two broadcasts addressed by
+ * ID are equal when they send the same lines to the same IDs. One addressed
+ * by ID equals one addressed by nickname when, with the nicknames in use
+ * now, it sends the same lines to the same nicknames; a recipient who has
+ * since deregistered matches no nickname. {@link #hashCode} only looks at the
+ * lines sent, so it is the same either way and never changes, and
+ * {@link #toString} shows a recipient who has deregistered by ID.
  */
 public final class Broadcast {
 
+    // Responses addressed by nickname; null for a broadcast addressed by ID
     private final Map<String, List<String>> responses;
+    // For a broadcast addressed by user ID: the line sent to every one of a
+    // set of distinct recipients, further lines for individual recipients
+    // (null until there are any), and the model that resolves IDs to
+    // nicknames. All null for a broadcast addressed by nickname.
+    private final String line;
+    private final int[] lineRecipients;
+    private Map<Integer, List<String>> userResponses;
+    private final ServerModel model;
+    // The error reported, for a broadcast made by error(); otherwise null
+    private ServerResponse error;
 
     // Hide constructor so Broadcasts can only be created via one of the
     // static factory methods below.
     private Broadcast() {
         responses = new TreeMap<>();
+        line = null;
+        lineRecipients = null;
+        userResponses = null;
+        model = null;
+        error = null;
+    }
+
+    private Broadcast(ServerModel model, String line, int[] lineRecipients) {
+        responses = null;
+        this.line = line;
+        this.lineRecipients = lineRecipients;
+        userResponses = null;
+        this.model = model;
+        error = null;
     }
 
     /**
@@ -37,6 +75,31 @@ public final class Broadcast {
         }
     }
 
+    /**
+     * Enqueue a response to be sent to the given user ID, after the line sent
+     * to every recipient. Only a handful of responses are ever added this way,
+     * so checking for duplicates costs a hash lookup and a comparison or two.
+     *
+     * @param userId   The ID of the user to whom the response should be sent
+     * @param response A string encoding of the response
+     */
+    private void addResponse(int userId, String response) {
+        if (response.equals(line) && Arrays.binarySearch(lineRecipients, userId) >= 0) {
+            return;
+        }
+        if (userResponses == null) {
+            userResponses = new HashMap<>();
+        }
+        List<String> responsesForUser = userResponses.get(userId);
+        if (responsesForUser == null) {
+            responsesForUser = new ArrayList<>(1);
+            userResponses.put(userId, responsesForUser);
+        }
+        if (!responsesForUser.contains(response)) {
+            responsesForUser.add(response);
+        }
+    }
+
     // ==========================================================================
     // Factory methods
     // ==========================================================================
@@ -54,15 +117,18 @@ public final class Broadcast {
      */
     public static Broadcast okay(Command command, Collection<String> recipients) {
         Broadcast broadcast = new Broadcast();
+        // Format once: every recipient shares the same string, which lets the
+        // backend encode it once as well
+        String response = command.toString();
         for (String recipient : recipients) {
-            broadcast.addResponse(recipient, command.toString());
+            broadcast.addResponse(recipient, response);
         }
 
         // Need to send response to user ID associated with *new* nick
         if (command instanceof NicknameCommand) {
             broadcast.responses.remove(command.getSender());
             NicknameCommand nickCommand = (NicknameCommand) command;
-            broadcast.addResponse(nickCommand.getNewNickname(), command.toString());
+            broadcast.addResponse(nickCommand.getNewNickname(), response);
         }
         return broadcast;
     }
@@ -83,9 +149,9 @@ public final class Broadcast {
         }
         Broadcast broadcast = new Broadcast();
         String recipient = command.getSender();
-        int errorCode = error.getCode();
-        String response = String.format(":%s ERROR %d", recipient, errorCode);
+        String response = WireEncoder.error(recipient, error.getCode());
         broadcast.addResponse(recipient, response);
+        broadcast.error = error;
         return broadcast;
     }
 
@@ -99,7 +165,7 @@ public final class Broadcast {
      */
     public static Broadcast connected(String recipient) {
         Broadcast broadcast = new Broadcast();
-        String response = String.format(":%s CONNECT", recipient);
+        String response = WireEncoder.connected(recipient);
         broadcast.addResponse(recipient, response);
         return broadcast;
     }
@@ -121,7 +187,7 @@ public final class Broadcast {
             throw new IllegalArgumentException("Disconnected user in broadcast");
         }
         Broadcast broadcast = new Broadcast();
-        String response = String.format(":%s QUIT", user);
+        String response = WireEncoder.quit(user);
         for (String recipient : recipients) {
             broadcast.addResponse(recipient, response);
         }
@@ -164,22 +230,108 @@ public final class Broadcast {
             throw new IllegalArgumentException("Invalid command type");
         }
         String namesPayload = createNamesPayload(owner, recipients);
-        String namesResponse = String
-                .format(":%s NAMES %s :%s", userToAdd, channelName, namesPayload);
+        String namesResponse = WireEncoder.names(userToAdd, channelName, namesPayload);
         broadcast.addResponse(userToAdd, namesResponse);
         return broadcast;
     }
 
+    // ==========================================================================
+    // Factory methods addressed by user ID
+    // ==========================================================================
+
+    /**
+     * Like {@link #okay(Command, Collection)}, addressed by user ID. The
+     * recipients of a {@link NicknameCommand} must include its sender.
+     *
+     * @param command    The {@link Command} whose effects to broadcast
+     * @param recipients The distinct IDs of the users who should receive the
+     *                   broadcast, in ascending order; held, not copied, so
+     *                   it must not be modified afterwards
+     * @param model      The model, to resolve the IDs to nicknames
+     * @return A {@code Broadcast} representing a set of responses to send
+     */
+    static Broadcast okay(Command command, int[] recipients, ServerModel model) {
+        return new Broadcast(model, command.toString(), recipients);
+    }
+
+    /**
+     * Like {@link #connected(String)}, addressed by user ID.
+     *
+     * @param userId   The ID of the new client
+     * @param nickname The automatically generated nickname for the client
+     * @param model    The model, to resolve the ID to a nickname
+     * @return A {@code Broadcast} to the new client
+     */
+    static Broadcast connected(int userId, String nickname, ServerModel model) {
+        String response = WireEncoder.connected(nickname);
+        return new Broadcast(model, response, new int[] { userId });
+    }
+
+    /**
+     * Like {@link #disconnected(String, Collection)}, addressed by user ID.
+     *
+     * @param user       The nickname of the disconnected user
+     * @param recipients The distinct IDs of the users who should be informed
+     *                   of the disconnection, in ascending order, not
+     *                   including the disconnected user
+     * @param model      The model, to resolve the IDs to nicknames
+     * @return A {@code Broadcast} representing the response to send
+     */
+    static Broadcast disconnected(String user, int[] recipients, ServerModel model) {
+        return new Broadcast(model, WireEncoder.quit(user), recipients);
+    }
+
+    /**
+     * Like {@link #names(Command, Collection, String)}, addressed by user ID.
+     *
+     * @param command    The command issued by the client (Invite or Join)
+     * @param recipients The distinct IDs of the users in the channel, in
+     *                   ascending order, including the one who joined
+     * @param joinedId   The ID of the user who joined, who is sent the names
+     * @param namesPayload The channel's {@code NAMES} payload, as rendered by
+     *                   {@link Channel#getNamesPayload()}
+     * @param model      The model, to resolve the IDs to nicknames
+     * @return A {@code Broadcast} representing the responses to send
+     * @throws IllegalArgumentException if {@code command} is not an instanceof
+     *                                  {@link JoinCommand}
+     *                                  or {@link InviteCommand}
+     */
+    static Broadcast names(
+            Command command, int[] recipients, int joinedId, String namesPayload,
+            ServerModel model
+    ) {
+        Broadcast broadcast = Broadcast.okay(command, recipients, model);
+        String channelName, userToAdd;
+        if (command instanceof JoinCommand) {
+            channelName = command.getChannel();
+            userToAdd = command.getSender();
+        } else if (command instanceof InviteCommand) {
+            channelName = command.getChannel();
+            userToAdd = ((InviteCommand) command).getUserToInvite();
+        } else {
+            throw new IllegalArgumentException("Invalid command type");
+        }
+        String namesResponse = WireEncoder.names(userToAdd, channelName, namesPayload);
+        broadcast.addResponse(joinedId, namesResponse);
+        return broadcast;
+    }
+
     // ==========================================================================
     // Response dispatch
     // ==========================================================================
 
     /**
-     * You should not call this method yourself. Associates the stored responses
-     * with the user IDs
-     * of the recipients. This * function will be called by the
-     * {@link ServerBackend} before
-     * dispatching the {@code Broadcast}.
+     * @return The error this broadcast reports to the sender of a command, or
+     *         null if it does not report one
+     */
+    ServerResponse getError() {
+        return error;
+    }
+
+    /**
+     * Associates the stored responses with the user IDs of the recipients, in
+     * a new map. The {@link ServerBackend} dispatches a {@code Broadcast}
+     * through {@link #forEachResponse} instead, which builds no map.
      * 
      * @param model A data structure representing the state of the server
      * @return a mapping from user ID to a list of response strings that should be
@@ -187,6 +339,25 @@ public final class Broadcast {
      *         {@link ServerBackend}
      */
     public Map<Integer, List<String>> getResponses(ServerModel model) {
+        if (responses == null) {
+            Map<Integer, List<String>> userIdResponses = new TreeMap<>();
+            for (int recipient : lineRecipients) {
+                List<String> lines = new ArrayList<>(1);
+                lines.add(line);
+                userIdResponses.put(recipient, lines);
+            }
+            if (userResponses != null) {
+                for (Map.Entry<Integer, List<String>> entry : userResponses.entrySet()) {
+                    List<String> lines = userIdResponses.get(entry.getKey());
+                    if (lines == null) {
+                        lines = new ArrayList<>();
+                        userIdResponses.put(entry.getKey(), lines);
+                    }
+                    lines.addAll(entry.getValue());
+                }
+            }
+            return userIdResponses;
+        }
         Map<Integer, List<String>> userIdResponses = new TreeMap<>();
         for (Map.Entry<String, List<String>> entry : responses.entrySet()) {
             int userId = model.getUserId(entry.getKey());
@@ -195,10 +366,77 @@ public final class Broadcast {
         return userIdResponses;
     }
 
+    /**
+     * Receives a broadcast's responses one at a time.
+     */
+    interface Visitor {
+        /**
+         * @param userId   The ID of the user to whom the response should be sent
+         * @param response A string encoding of the response; the same instance
+         *                 for every recipient of the same response
+         */
+        void visit(int userId, String response);
+    }
+
+    /**
+     * Hands every response to a visitor, in the order each recipient should
+     * receive them. A broadcast addressed by user ID does this without
+     * building a map or looking anything up; one addressed by nickname looks
+     * up each recipient's ID in the model.
+     *
+     * @param model   The model, to resolve nicknames to user IDs
+     * @param visitor The visitor
+     */
+    void forEachResponse(ServerModel model, Visitor visitor) {
+        if (responses != null) {
+            for (Map.Entry<Integer, List<String>> entry : getResponses(model).entrySet()) {
+                for (String response : entry.getValue()) {
+                    visitor.visit(entry.getKey(), response);
+                }
+            }
+            return;
+        }
+        for (int recipient : lineRecipients) {
+            visitor.visit(recipient, line);
+        }
+        if (userResponses != null) {
+            for (Map.Entry<Integer, List<String>> entry : userResponses.entrySet()) {
+                for (String response : entry.getValue()) {
+                    visitor.visit(entry.getKey(), response);
+                }
+            }
+        }
+    }
+
     // ==========================================================================
     // Private utility methods
     // ==========================================================================
 
+    /**
+     * Resolves the recipients of a broadcast addressed by user ID to the
+     * nicknames in use now.
+     *
+     * @param unresolved What to do with a recipient who is no longer
+     *                   registered: if true, key their responses by
+     *                   {@code #<user ID>}; if false, give up
+     * @return The responses by nickname, or null if a recipient is no longer
+     *         registered and {@code unresolved} is false
+     */
+    private Map<String, List<String>> resolveNicknames(boolean unresolved) {
+        Map<String, List<String>> nicknameResponses = new TreeMap<>();
+        for (Map.Entry<Integer, List<String>> entry : getResponses(model).entrySet()) {
+            String nickname = model.getNickname(entry.getKey());
+            if (nickname == null) {
+                if (!unresolved) {
+                    return null;
+                }
+                nickname = "#" + entry.getKey();
+            }
+            nicknameResponses.put(nickname, entry.getValue());
+        }
+        return nicknameResponses;
+    }
+
     /**
      * Generates a payload for a {@code NAMES} response for some channel, given the
      * nickname of the
@@ -244,17 +482,47 @@ public final class Broadcast {
             return false;
         }
         Broadcast that = (Broadcast) o;
-        return this.responses.equals(that.responses);
+        if (this.responses != null && that.responses != null) {
+            return this.responses.equals(that.responses);
+        }
+        if (this.responses == null && that.responses == null) {
+            return this.getResponses(model).equals(that.getResponses(that.model));
+        }
+        Broadcast byId = this.responses == null ? this : that;
+        Broadcast byNickname = this.responses == null ? that : this;
+        Map<String, List<String>> resolved = byId.resolveNicknames(false);
+        return resolved != null && resolved.equals(byNickname.responses);
     }
 
     @Override
     public int hashCode() {
-        return responses.hashCode();
+        // The sum of the hashes of every line sent, whoever it is sent to
+        int hash = 0;
+        if (responses != null) {
+            for (List<String> lines : responses.values()) {
+                for (String response : lines) {
+                    hash += response.hashCode();
+                }
+            }
+            return hash;
+        }
+        hash = line.hashCode() * lineRecipients.length;
+        if (userResponses != null) {
+            for (List<String> lines : userResponses.values()) {
+                for (String response : lines) {
+                    hash += response.hashCode();
+                }
+            }
+        }
+        return hash;
     }
 
     @Override
     public String toString() {
-        return responses.toString();
+        if (responses != null) {
+            return responses.toString();
+        }
+        return resolveNicknames(true).toString();
     }
 
 }
@@ -1,48 +1,101 @@
 package org.cis120;
 
-import java.util.*;
+import java.util.Arrays;
 
+/**
+ * A {@code Channel} tracks who owns a channel, who is in it and whether it is
+ * invite-only. Members are identified by their user ID rather than their
+ * nickname, and the {@link ServerModel} resolves IDs to nicknames when it
+ * needs them. The one exception is the {@code NAMES} payload, which the
+ * channel keeps ready in a {@link ChannelNames}: it is patched as members come
+ * and go, and by the model when a member changes their nickname.
+ *
+ * Readers see the members through an immutable snapshot that is rebuilt only
+ * after the membership changes, so that sending to a channel whose members
+ * have not changed copies nothing.
+ */
 public final class Channel implements Comparable {
 
-    private Collection<String> userList;
-    private String owner;
+    private final UserIdSet members;
+    private final int ownerId;
     private boolean isPrivate;
+    // The members as a sorted array that is never modified once published,
+    // or null if they have changed since it was last built
+    private volatile int[] snapshot;
+    private final ChannelNames names;
 
-    public Channel(String tempOwner, boolean tempIsPrivate) {
+    public Channel(int tempOwnerId, String tempOwnerNickname, boolean tempIsPrivate) {
         this.isPrivate = tempIsPrivate;
-        this.owner = tempOwner;
-        userList = new TreeSet<String>();
-        userList.add(owner);
+        this.ownerId = tempOwnerId;
+        members = new UserIdSet();
+        members.add(ownerId);
+        names = new ChannelNames(tempOwnerNickname);
     }
 
     public boolean getIsPrivate() {
         return isPrivate;
     }
 
-    public String getOwner() {
-        return owner;
+    public int getOwnerId() {
+        return ownerId;
     }
 
-    public void setOwner(String tempNewOwner) {
-        this.owner = tempNewOwner;
+    /**
+     * Gets the members as they are now. The array is shared by every caller
+     * until the membership next changes, and must not be modified; because it
+     * never changes, it may be handed to and read by any thread. It must only
+     * be requested by a thread that may also change the channel.
+     *
+     * @return The members' user IDs, in ascending order
+     */
+    public int[] getUserIds() {
+        int[] userIds = snapshot;
+        if (userIds == null) {
+            userIds = members.toArray();
+            Arrays.sort(userIds);
+            snapshot = userIds;
+        }
+        return userIds;
+    }
+
+    public int getUserCount() {
+        return members.size();
+    }
+
+    public boolean hasUser(int userId) {
+        return members.contains(userId);
     }
 
-    public Collection<String> getUserList() {
-        return userList;
+    /**
+     * @return The payload of a {@code NAMES} response for this channel
+     */
+    public String getNamesPayload() {
+        return names.getPayload();
     }
 
-    public void addUser(String nickname) {
-        userList.add(nickname);
+    public void addUser(int userId, String nickname) {
+        if (members.add(userId)) {
+            snapshot = null;
+            names.add(nickname);
+        }
     }
 
-    public void banUser(String nickname) {
-        if (userList.contains(nickname)) {
-            userList.remove(nickname);
+    public void banUser(int userId, String nickname) {
+        if (members.remove(userId)) {
+            snapshot = null;
+            names.remove(nickname);
         }
     }
 
+    /**
+     * Records that a member, possibly the owner, has changed their nickname.
+     */
+    public void renameUser(String oldNickname, String newNickname) {
+        names.rename(oldNickname, newNickname);
+    }
+
     @Override
     public int compareTo(Object o) {
         return 0;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,97 @@
+package org.cis120;
+
+import java.util.Arrays;
+
+/**
+ * A {@code ChannelNames} keeps the nicknames of a {@link Channel}'s members in
+ * sorted order, and the {@code NAMES} payload rendered from them, so that a
+ * join does not sort the whole channel again.
+ *
+ * Each change to the members or their nicknames is patched into the sorted
+ * array with a binary search and a single array copy; the payload is rendered
+ * at most once per change, the first time it is asked for.
+ */
+final class ChannelNames {
+
+    private String[] nicks;
+    private int size;
+    private String owner;
+    // The rendered payload, or null if the names have changed since
+    private String payload;
+
+    /**
+     * @param owner The nickname of the channel's owner, its first member
+     */
+    ChannelNames(String owner) {
+        nicks = new String[4];
+        nicks[0] = owner;
+        size = 1;
+        this.owner = owner;
+        payload = null;
+    }
+
+    void add(String nick) {
+        int index = Arrays.binarySearch(nicks, 0, size, nick);
+        if (index >= 0) {
+            return;
+        }
+        index = -index - 1;
+        if (size == nicks.length) {
+            nicks = Arrays.copyOf(nicks, size * 2);
+        }
+        System.arraycopy(nicks, index, nicks, index + 1, size - index);
+        nicks[index] = nick;
+        size++;
+        payload = null;
+    }
+
+    void remove(String nick) {
+        int index = Arrays.binarySearch(nicks, 0, size, nick);
+        if (index < 0) {
+            return;
+        }
+        System.arraycopy(nicks, index + 1, nicks, index, size - index - 1);
+        nicks[--size] = null;
+        payload = null;
+    }
+
+    /**
+     * Replaces a member's nickname, including the owner's.
+     */
+    void rename(String oldNick, String newNick) {
+        if (Arrays.binarySearch(nicks, 0, size, oldNick) < 0) {
+            return;
+        }
+        remove(oldNick);
+        add(newNick);
+        if (oldNick.equals(owner)) {
+            owner = newNick;
+        }
+    }
+
+    /**
+     * @return The payload of a {@code NAMES} response: every member's
+     *         nickname in order, separated by spaces, with the owner's marked
+     *         by a leading {@code @}
+     */
+    String getPayload() {
+        if (payload == null) {
+            int length = size;
+            for (int i = 0; i < size; i++) {
+                length += nicks[i].length();
+            }
+            StringBuilder builder = new StringBuilder(length);
+            for (int i = 0; i < size; i++) {
+                if (i > 0) {
+                    builder.append(' ');
+                }
+                if (nicks[i].equals(owner)) {
+                    builder.append('@');
+                }
+                builder.append(nicks[i]);
+            }
+            payload = builder.toString();
+        }
+        return payload;
+    }
+}
@@ -47,6 +47,17 @@ public abstract class Command {
         return sender;
     }
 
+    /**
+     * Gets the name of the only channel the {@code Command} reads or changes,
+     * which decides the model shard that processes it.
+     *
+     * @return The channel name, or {@code null} if the command may touch
+     *         any channel
+     */
+    public String getChannel() {
+        return null;
+    }
+
     /**
      * Process the command and update the server model accordingly.
      *
@@ -107,7 +118,7 @@ class NicknameCommand extends Command {
 
     @Override
     public String toString() {
-        return String.format(":%s NICK %s", getSender(), newNickname);
+        return WireEncoder.nick(getSender(), newNickname);
     }
 }
 
@@ -129,6 +140,7 @@ class CreateCommand extends Command {
         return model.createChannel(this);
     }
 
+    @Override
     public String getChannel() {
         return channel;
     }
@@ -139,8 +151,7 @@ class CreateCommand extends Command {
 
     @Override
     public String toString() {
-        int flag = inviteOnly ? 1 : 0;
-        return String.format(":%s CREATE %s %d", getSender(), channel, flag);
+        return WireEncoder.create(getSender(), channel, inviteOnly);
     }
 }
 
@@ -162,13 +173,14 @@ class JoinCommand extends Command {
         return model.joinChannel(this);
     }
 
+    @Override
     public String getChannel() {
         return channel;
     }
 
     @Override
     public String toString() {
-        return String.format(":%s JOIN %s", getSender(), channel);
+        return WireEncoder.join(getSender(), channel);
     }
 }
 
@@ -194,6 +206,7 @@ class MessageCommand extends Command {
         return model.sendMessage(this);
     }
 
+    @Override
     public String getChannel() {
         return channel;
     }
@@ -204,7 +217,7 @@ class MessageCommand extends Command {
 
     @Override
     public String toString() {
-        return String.format(":%s MESG %s :%s", getSender(), channel, message);
+        return WireEncoder.message(getSender(), channel, message);
     }
 }
 
@@ -224,13 +237,14 @@ class LeaveCommand extends Command {
         return model.leaveChannel(this);
     }
 
+    @Override
     public String getChannel() {
         return channel;
     }
 
     @Override
     public String toString() {
-        return String.format(":%s LEAVE %s", getSender(), channel);
+        return WireEncoder.leave(getSender(), channel);
     }
 }
 
@@ -253,6 +267,7 @@ class InviteCommand extends Command {
         return model.inviteUser(this);
     }
 
+    @Override
     public String getChannel() {
         return channel;
     }
@@ -263,7 +278,7 @@ class InviteCommand extends Command {
 
     @Override
     public String toString() {
-        return String.format(":%s INVITE %s %s", getSender(), channel, userToInvite);
+        return WireEncoder.invite(getSender(), channel, userToInvite);
     }
 }
 
@@ -288,6 +303,7 @@ class KickCommand extends Command {
         return model.kickUser(this);
     }
 
+    @Override
     public String getChannel() {
         return channel;
     }
@@ -298,6 +314,36 @@ class KickCommand extends Command {
 
     @Override
     public String toString() {
-        return String.format(":%s KICK %s %s", getSender(), channel, userToKick);
+        return WireEncoder.kick(getSender(), channel, userToKick);
+    }
+}
+
+/**
+ * Represents a line from a client that could not be parsed into any other
+ * {@link Command}. It changes nothing, and answers the sender with the error
+ * the {@link CommandParser} chose for it.
+ */
+final class InvalidCommand extends Command {
+    private final String line;
+    private final ServerResponse error;
+
+    public InvalidCommand(int senderId, String sender, String line, ServerResponse error) {
+        super(senderId, sender);
+        this.line = line;
+        this.error = error;
+    }
+
+    @Override
+    public Broadcast updateServerModel(ServerModel model) {
+        return Broadcast.error(this, error);
+    }
+
+    public ServerResponse getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return line;
     }
 }
@@ -1,14 +1,9 @@
 package org.cis120;
 
-import java.util.List;
-import java.util.LinkedList;
-
 /**
  * The {@code CommandParser} class includes a single static method that can
  * convert a
  * string into the appropriate {@link Command} object that it represents.
- *
- * You do not need to modify this file.
  */
 public final class CommandParser {
 
@@ -17,57 +12,69 @@ public final class CommandParser {
      * creates a
      * {@link Command} object representing it.
      *
+     * The string is tokenized in a single pass, without copying anything but
+     * the parameters and payload the command keeps. A string that does not
+     * make a command is not an exceptional event on a busy server, so rather
+     * than throwing, it is parsed into an {@link InvalidCommand} that answers
+     * the sender with an error. A command missing its channel is answered
+     * with {@link ServerResponse#NO_SUCH_CHANNEL}, one missing a nickname with
+     * {@link ServerResponse#INVALID_NAME} or {@link ServerResponse#NO_SUCH_USER},
+     * and any other malformed string with
+     * {@link ServerResponse#INVALID_COMMAND}.
+     *
      * @param senderId      The backend-generated ID for the sender of the command
      * @param sender        The current username of the sender
      * @param commandString The command string to parse
-     * @return a subclass of {@link Command} corresponding to the string
-     * @throws IllegalArgumentException if the commandString is syntactically
-     *                                  invalid, meaning that
-     *                                  it is of an unrecognized type or its
-     *                                  components do not match its type.
-     *
+     * @return a subclass of {@link Command} corresponding to the string, which
+     *         is an {@link InvalidCommand} if the string is syntactically
+     *         invalid, meaning that it is of an unrecognized type or its
+     *         components do not match its type; never null
      */
     public static Command parse(int senderId, String sender, String commandString) {
+        int length = commandString.length();
         CommandType commandType = null;
-        List<String> parameters = new LinkedList<>();
+        String param0 = null;
+        String param1 = null;
+        int parameters = 0;
         String payload = null;
-        int index;
 
-        while ((index = commandString.indexOf(' ')) > 0) {
-            if (commandString.startsWith(":")) {
-                payload = commandString.substring(1);
-                commandString = "";
+        int start = 0;
+        while (start < length) {
+            if (commandString.charAt(start) == ':') {
+                payload = commandString.substring(start + 1);
                 break;
-            } else {
-                String token = commandString.substring(0, index);
+            }
+            int end = commandString.indexOf(' ', start);
+            if (end <= start) {
+                // The last token, or one that starts with a space, takes the
+                // rest of the string
+                end = length;
+            }
+            if (commandType == null) {
+                commandType = verb(commandString, start, end);
                 if (commandType == null) {
-                    commandType = CommandType.valueOf(token);
-                } else {
-                    parameters.add(token);
+                    return invalid(senderId, sender, commandString);
                 }
-                commandString = commandString.substring(index + 1);
-            }
-        }
-
-        if (!commandString.isEmpty()) {
-            if (commandString.startsWith(":")) {
-                payload = commandString.substring(1);
-            } else if (commandType == null) {
-                commandType = CommandType.valueOf(commandString);
+            } else if (parameters == 0) {
+                param0 = commandString.substring(start, end);
+                parameters++;
+            } else if (parameters == 1) {
+                param1 = commandString.substring(start, end);
+                parameters++;
             } else {
-                parameters.add(commandString);
+                return invalid(senderId, sender, commandString);
             }
+            start = end + 1;
         }
 
         if (commandType == null) {
-            throw new IllegalArgumentException("Unknown command type");
-        } else if (parameters.size() > 2) {
-            throw new IllegalArgumentException("Too many parameters");
+            return invalid(senderId, sender, commandString);
+        } else if (parameters < commandType.parameters) {
+            return new InvalidCommand(
+                    senderId, sender, commandString, missing(commandType, parameters)
+            );
         }
 
-        String param0 = parameters.size() >= 1 ? parameters.get(0) : null;
-        String param1 = parameters.size() >= 2 ? parameters.get(1) : null;
-
         switch (commandType) {
             case CREATE:
                 boolean isInviteOnly;
@@ -76,7 +83,7 @@ public final class CommandParser {
                 } else if ("0".equals(param1)) {
                     isInviteOnly = false;
                 } else {
-                    return null;
+                    return invalid(senderId, sender, commandString);
                 }
                 return new CreateCommand(senderId, sender, param0, isInviteOnly);
             case INVITE:
@@ -88,16 +95,92 @@ public final class CommandParser {
             case LEAVE:
                 return new LeaveCommand(senderId, sender, param0);
             case MESG:
+                if (payload == null) {
+                    return invalid(senderId, sender, commandString);
+                }
                 return new MessageCommand(senderId, sender, param0, payload);
             case NICK:
                 return new NicknameCommand(senderId, sender, param0);
+            default:
+                return invalid(senderId, sender, commandString);
+        }
+    }
+
+    private static Command invalid(int senderId, String sender, String commandString) {
+        return new InvalidCommand(senderId, sender, commandString, ServerResponse.INVALID_COMMAND);
+    }
+
+    /**
+     * Chooses the error for a command missing a parameter: the one the model
+     * would have answered if the parameter had named nothing.
+     *
+     * @param commandType The type of the command
+     * @param parameters  The number of parameters it was given
+     * @return The error to answer the sender with
+     */
+    private static ServerResponse missing(CommandType commandType, int parameters) {
+        if (commandType == CommandType.NICK) {
+            return ServerResponse.INVALID_NAME;
+        } else if (parameters == 0) {
+            return ServerResponse.NO_SUCH_CHANNEL;
+        } else if (commandType == CommandType.CREATE) {
+            return ServerResponse.INVALID_COMMAND;
+        }
+        // The user to invite or kick
+        return ServerResponse.NO_SUCH_USER;
+    }
+
+    /**
+     * Looks up the command type named by part of a string, without copying it.
+     *
+     * @return The command type, or null if the name is not one
+     */
+    private static CommandType verb(String commandString, int start, int end) {
+        if (end - start < 4) {
+            return null;
+        }
+        CommandType candidate;
+        switch (commandString.charAt(start)) {
+            case 'C':
+                candidate = CommandType.CREATE;
+                break;
+            case 'I':
+                candidate = CommandType.INVITE;
+                break;
+            case 'J':
+                candidate = CommandType.JOIN;
+                break;
+            case 'K':
+                candidate = CommandType.KICK;
+                break;
+            case 'L':
+                candidate = CommandType.LEAVE;
+                break;
+            case 'M':
+                candidate = CommandType.MESG;
+                break;
+            case 'N':
+                candidate = CommandType.NICK;
+                break;
             default:
                 return null;
         }
+        String name = candidate.name();
+        if (name.length() != end - start || !commandString.startsWith(name, start)) {
+            return null;
+        }
+        return candidate;
     }
 
     private enum CommandType {
-        CREATE, INVITE, JOIN, KICK, LEAVE, MESG, NICK
+        CREATE(2), INVITE(2), JOIN(1), KICK(2), LEAVE(1), MESG(1), NICK(1);
+
+        // The number of parameters the command needs, not counting a payload
+        private final int parameters;
+
+        CommandType(int parameters) {
+            this.parameters = parameters;
+        }
     }
 
     // Prevents the instantiation of any CommandParser objects,
@@ -0,0 +1,44 @@
+package org.cis120;
+
+import java.util.List;
+
+/**
+ * A {@code Connection} is the {@link ServerBackend}'s handle on one connected
+ * client, independent of the networking engine that serves it.
+ */
+interface Connection {
+
+    /**
+     * @return the user ID the backend assigned to this client
+     */
+    int getUserId();
+
+    /**
+     * @return the queue of responses waiting to be written to this client
+     */
+    OutboundQueue getOutbound();
+
+    /**
+     * Queues response lines to be written to the client, in order. Called on
+     * the model thread, so it must never block on the network. If the client
+     * has fallen too far behind, the {@link SlowConsumerPolicy} either drops
+     * lines or closes the connection.
+     *
+     * Queued lines are not written until {@link #flush()} is called.
+     *
+     * @param responses the encoded lines to send
+     */
+    void send(List<Frame> responses);
+
+    /**
+     * Starts writing every queued line to the client, in as few writes as
+     * possible. Like {@link #send(List)}, this never blocks on the network.
+     */
+    void flush();
+
+    /**
+     * Closes the connection. Closing an already closed connection has no
+     * effect.
+     */
+    void close();
+}
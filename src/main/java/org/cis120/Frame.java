@@ -0,0 +1,108 @@
+package org.cis120;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@code Frame} is one response line, encoded for the wire exactly once.
+ *
+ * When a response goes to many clients, as a {@code MESG} to a large channel
+ * does, every recipient's {@link OutboundQueue} holds the same frame, and each
+ * networking engine writes from its own read-only view of the shared bytes.
+ * Formatting and encoding therefore cost the same for one recipient as for
+ * five thousand.
+ */
+final class Frame {
+
+    /** The character set used on the wire in both directions. */
+    static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    private final String text;
+    private final byte[] bytes;
+    private final boolean message;
+    // The traced request this line responds to, or null
+    private final RequestTracer.Trace trace;
+
+    private Frame(String text, RequestTracer.Trace trace) {
+        this.text = text;
+        this.trace = trace;
+        bytes = (text + "\n").getBytes(CHARSET);
+        int space = text.indexOf(' ');
+        // Response lines all start with ":<nickname> <TYPE>", and nicknames
+        // never contain spaces
+        message = space >= 0 && text.startsWith("MESG ", space + 1);
+    }
+
+    /**
+     * Encodes a response line.
+     *
+     * @param text the line, without a line terminator
+     * @return the encoded frame
+     */
+    static Frame of(String text) {
+        return new Frame(text, null);
+    }
+
+    /**
+     * Encodes a response line to a request that is being traced.
+     *
+     * @param text  the line, without a line terminator
+     * @param trace the trace of the request, or null if it is not traced
+     * @return the encoded frame
+     */
+    static Frame of(String text, RequestTracer.Trace trace) {
+        return new Frame(text, trace);
+    }
+
+    /**
+     * Called by a networking engine each time the whole line has been written
+     * to one of its recipients.
+     */
+    void written() {
+        if (trace != null) {
+            trace.lineWritten();
+        }
+    }
+
+    /** @return the line, without a line terminator */
+    String getText() {
+        return text;
+    }
+
+    /**
+     * @return a new read-only view of the encoded line and its terminator,
+     *         positioned at the first byte; views do not affect one another
+     */
+    ByteBuffer buffer() {
+        return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+
+    /**
+     * Copies the encoded line and its terminator to a stream, for engines that
+     * cannot write from a buffer.
+     *
+     * @param out the stream to write to
+     * @throws IOException if the stream cannot be written
+     */
+    void writeTo(OutputStream out) throws IOException {
+        out.write(bytes);
+    }
+
+    /** @return the encoded size of the line, including its terminator */
+    int size() {
+        return bytes.length;
+    }
+
+    /** @return true if this is a {@code MESG} line */
+    boolean isMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
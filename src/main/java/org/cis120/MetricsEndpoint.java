@@ -0,0 +1,80 @@
+package org.cis120;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The {@code MetricsEndpoint} serves a {@link ServerBackend}'s metrics over
+ * HTTP at {@code /metrics}, in the Prometheus text exposition format, for
+ * instance to {@code curl localhost:9120/metrics}, and the requests its
+ * {@link RequestTracer} has traced at {@code /traces}. It only listens on the
+ * loopback interface.
+ *
+ * Requests are answered on the HTTP server's own thread. Building the
+ * answer adds up the counters and reads the gauges the model has published,
+ * so a scrape never waits for, or holds up, the model thread.
+ */
+final class MetricsEndpoint {
+
+    private final HttpServer server;
+
+    /**
+     * Binds the endpoint. Nothing is served until {@link #start()} is called.
+     *
+     * @param port    the TCP port to listen on
+     * @param backend the backend whose metrics are served
+     * @throws IOException if the port cannot be bound
+     */
+    MetricsEndpoint(int port, final ServerBackend backend) throws IOException {
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        server = HttpServer.create(address, 0);
+        server.createContext("/metrics", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                respond(exchange, "text/plain; version=0.0.4; charset=utf-8",
+                        backend, false);
+            }
+        });
+        server.createContext("/traces", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                respond(exchange, "text/plain; charset=utf-8", backend, true);
+            }
+        });
+    }
+
+    void start() {
+        server.start();
+    }
+
+    void stop() {
+        server.stop(0);
+    }
+
+    private static void respond(
+            HttpExchange exchange, String contentType, ServerBackend backend, boolean traces
+    ) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            String text = traces ? backend.getTracer().dump() : backend.renderMetrics();
+            byte[] body = text.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(200, body.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(body);
+            out.close();
+        } finally {
+            exchange.close();
+        }
+    }
+}
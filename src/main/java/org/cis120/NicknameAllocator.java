@@ -0,0 +1,115 @@
+package org.cis120;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A {@code NicknameAllocator} hands out the default nicknames "User0",
+ * "User1", ..., always choosing the smallest suffix whose nickname is not in
+ * use, as {@link ServerModel#registerUser(int)} requires.
+ *
+ * Every suffix from {@code next} upwards is free unless it is in
+ * {@code claimedAbove}; below {@code next}, the free suffixes are kept in
+ * {@code free}. Allocating and releasing a nickname take logarithmic time in
+ * the number of free suffixes, instead of a scan of every registered user.
+ *
+ * The allocator only knows which nicknames are in use if it is told: every
+ * nickname that enters or leaves use, whether default or chosen with NICK,
+ * must be passed to {@link #claim} or {@link #release}. Nicknames outside the
+ * "UserN" namespace are ignored.
+ */
+final class NicknameAllocator {
+
+    private static final String PREFIX = "User";
+
+    private final TreeSet<Integer> free;
+    private final Set<Integer> claimedAbove;
+    private int next;
+
+    NicknameAllocator() {
+        free = new TreeSet<>();
+        claimedAbove = new HashSet<>();
+        next = 0;
+    }
+
+    /**
+     * Takes the default nickname with the smallest free suffix.
+     *
+     * @return The nickname, now in use
+     */
+    String allocate() {
+        Integer suffix = free.pollFirst();
+        if (suffix != null) {
+            return PREFIX + suffix;
+        }
+        while (claimedAbove.remove(next)) {
+            next++;
+        }
+        return PREFIX + next++;
+    }
+
+    /**
+     * Records that a nickname has come into use other than through
+     * {@link #allocate()}, such as by a NICK.
+     */
+    void claim(String nickname) {
+        int suffix = suffixOf(nickname);
+        if (suffix < 0) {
+            return;
+        }
+        if (suffix < next) {
+            free.remove(suffix);
+        } else {
+            claimedAbove.add(suffix);
+        }
+    }
+
+    /**
+     * Records that a nickname is no longer in use.
+     */
+    void release(String nickname) {
+        int suffix = suffixOf(nickname);
+        if (suffix < 0) {
+            return;
+        }
+        if (suffix < next) {
+            free.add(suffix);
+        } else {
+            claimedAbove.remove(suffix);
+        }
+    }
+
+    /**
+     * Gets the suffix of a nickname in the "UserN" namespace: "User" followed
+     * by N in decimal, without leading zeros. Nicknames such as "User007" are
+     * never generated, so they do not count.
+     *
+     * @return The suffix, or -1 if the nickname is not in the namespace
+     */
+    static int suffixOf(String nickname) {
+        if (nickname == null) {
+            return -1;
+        }
+        int length = nickname.length();
+        if (!nickname.startsWith(PREFIX) || length == PREFIX.length()
+                || length > PREFIX.length() + 10) {
+            return -1;
+        }
+        if (nickname.charAt(PREFIX.length()) == '0' && length > PREFIX.length() + 1) {
+            return -1;
+        }
+        long suffix = 0;
+        for (int i = PREFIX.length(); i < length; i++) {
+            char c = nickname.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            suffix = suffix * 10 + (c - '0');
+        }
+        if (suffix > Integer.MAX_VALUE) {
+            return -1;
+        }
+        return (int) suffix;
+    }
+}
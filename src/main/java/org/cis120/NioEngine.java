@@ -0,0 +1,440 @@
+package org.cis120;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The {@code NioEngine} serves clients of a {@link ServerBackend} with a fixed
+ * number of {@code java.nio} selector threads instead of one thread per
+ * connection. Connections are accepted on the thread that calls
+ * {@link #run()} and spread round-robin across the selector threads, which
+ * read request lines and write queued responses without ever blocking.
+ *
+ * Requests are handed to the backend exactly as the blocking engine does, so
+ * the model thread and {@link ServerModel} are unaware of which engine is in
+ * use; like the blocking engine's reader, a last line the client sends
+ * without a line terminator before closing its end is still handed over. A
+ * client that sends a line longer than the configured limit is disconnected
+ * rather than buffered without bound.
+ */
+final class NioEngine implements Runnable {
+
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    // How long to wait before accepting again after accept() fails, for
+    // instance because the process has run out of file descriptors
+    private static final long ACCEPT_RETRY_MILLIS = 100;
+
+    private final ServerBackend backend;
+    private final ServerSocketChannel serverChannel;
+    private final EventLoop[] loops;
+    private final int maxLineBytes;
+
+    /**
+     * Binds the server channel and opens the selectors. No threads are started
+     * until {@link #run()} is called.
+     *
+     * @param backend      the backend to which requests are handed
+     * @param port         the TCP port to listen on
+     * @param threads      the number of selector threads
+     * @param maxLineBytes the longest request line accepted, in bytes, not
+     *                     counting its terminator
+     * @throws IOException if the port cannot be bound
+     */
+    NioEngine(ServerBackend backend, int port, int threads, int maxLineBytes)
+            throws IOException {
+        this.backend = backend;
+        this.maxLineBytes = maxLineBytes;
+        serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(new InetSocketAddress(port));
+            loops = new EventLoop[threads];
+            for (int i = 0; i < threads; i++) {
+                loops[i] = new EventLoop();
+            }
+        } catch (IOException iox) {
+            serverChannel.close();
+            throw iox;
+        }
+    }
+
+    /**
+     * Starts the selector threads and accepts connections on the current
+     * thread until the backend stops or {@link #close()} is called. A failure
+     * to accept one connection, such as running out of file descriptors, is
+     * logged and retried after a short pause, while the clients already
+     * connected go on being served.
+     */
+    @Override
+    public void run() {
+        for (int i = 0; i < loops.length; i++) {
+            new Thread(loops[i], "Selector " + i).start();
+        }
+        try {
+            while (backend.isRunning() && serverChannel.isOpen()) {
+                SocketChannel channel;
+                try {
+                    channel = serverChannel.accept();
+                } catch (ClosedChannelException ccx) {
+                    // stop() closed the server channel; this is a normal shutdown
+                    break;
+                } catch (IOException iox) {
+                    backend.getLog().error("Failed to accept a connection", iox);
+                    try {
+                        Thread.sleep(ACCEPT_RETRY_MILLIS);
+                    } catch (InterruptedException ix) {
+                        break;
+                    }
+                    continue;
+                }
+                try {
+                    channel.configureBlocking(false);
+                } catch (IOException iox) {
+                    backend.getLog().error("Failed to set up an accepted connection", iox);
+                    closeQuietly(channel);
+                    continue;
+                }
+                int userId = backend.nextUserId();
+                EventLoop loop = loops[userId % loops.length];
+                NioConnection connection = new NioConnection(userId, channel, loop);
+                backend.connectionOpened(connection);
+                loop.register(connection);
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Stops accepting connections and closes every open client connection.
+     */
+    void close() {
+        try {
+            serverChannel.close();
+        } catch (IOException iox) {
+            iox.printStackTrace();
+        }
+        for (EventLoop loop : loops) {
+            loop.shutdown();
+        }
+    }
+
+    private void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException iox) {
+            // Nothing more can be done with the channel
+        }
+    }
+
+    // ==========================================================================
+    // EventLoop
+    // ==========================================================================
+
+    /**
+     * A single selector thread. Other threads never touch the selector's keys
+     * directly; they post connections to one of the pending queues and wake
+     * the selector up.
+     */
+    private final class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<NioConnection> pendingRegistrations;
+        private final Queue<NioConnection> pendingWrites;
+        private volatile boolean open;
+
+        EventLoop() throws IOException {
+            selector = Selector.open();
+            pendingRegistrations = new ConcurrentLinkedQueue<>();
+            pendingWrites = new ConcurrentLinkedQueue<>();
+            open = true;
+        }
+
+        void register(NioConnection connection) {
+            pendingRegistrations.add(connection);
+            selector.wakeup();
+        }
+
+        void requestWrite(NioConnection connection) {
+            if (connection.writeRequested.compareAndSet(false, true)) {
+                pendingWrites.add(connection);
+                selector.wakeup();
+            }
+        }
+
+        void shutdown() {
+            open = false;
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (open && backend.isRunning()) {
+                    selector.select();
+                    processPending();
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        NioConnection connection = (NioConnection) key.attachment();
+                        if (key.isValid() && key.isReadable()) {
+                            connection.handleRead();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.handleWrite();
+                        }
+                    }
+                }
+            } catch (IOException iox) {
+                iox.printStackTrace();
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    ((NioConnection) key.attachment()).close();
+                }
+                try {
+                    selector.close();
+                } catch (IOException iox) {
+                    iox.printStackTrace();
+                }
+            }
+        }
+
+        private void processPending() {
+            NioConnection connection;
+            while ((connection = pendingRegistrations.poll()) != null) {
+                try {
+                    connection.key = connection.channel
+                            .register(selector, SelectionKey.OP_READ, connection);
+                    connection.updateInterest();
+                } catch (ClosedChannelException ccx) {
+                    connection.close();
+                }
+            }
+            while ((connection = pendingWrites.poll()) != null) {
+                connection.writeRequested.set(false);
+                connection.updateInterest();
+            }
+        }
+    }
+
+    // ==========================================================================
+    // NioConnection
+    // ==========================================================================
+
+    /**
+     * A client served by an {@link EventLoop}. Reads and writes happen on the
+     * loop's thread. {@link #send(List)} and {@link #flush()} may be called
+     * from any thread; they only queue lines and ask the loop for write
+     * interest. Everything queued when the channel becomes writable is sent
+     * with one gathering write.
+     */
+    private final class NioConnection implements Connection {
+        private final int userId;
+        private final SocketChannel channel;
+        private final EventLoop loop;
+        private final ByteBuffer readBuffer;
+        private final ByteArrayOutputStream partialLine;
+        private final OutboundQueue outbound;
+        private final AtomicBoolean writeRequested;
+        private final AtomicBoolean closed;
+
+        // Only touched on the loop's thread
+        private SelectionKey key;
+        private final List<Frame> batch;
+        private Frame[] writeFrames;
+        private ByteBuffer[] writeBuffers;
+        private int writeOffset;
+
+        NioConnection(int userId, SocketChannel channel, EventLoop loop) {
+            this.userId = userId;
+            this.channel = channel;
+            this.loop = loop;
+            readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            partialLine = new ByteArrayOutputStream();
+            outbound = new OutboundQueue(backend.getSlowConsumerPolicy());
+            writeRequested = new AtomicBoolean(false);
+            closed = new AtomicBoolean(false);
+            batch = new ArrayList<>();
+            writeFrames = new Frame[0];
+            writeBuffers = new ByteBuffer[0];
+            writeOffset = 0;
+        }
+
+        @Override
+        public int getUserId() {
+            return userId;
+        }
+
+        @Override
+        public OutboundQueue getOutbound() {
+            return outbound;
+        }
+
+        @Override
+        public void send(List<Frame> responses) {
+            if (closed.get()) {
+                return;
+            }
+            for (Frame response : responses) {
+                if (!outbound.offer(response)) {
+                    backend.getLog().warn(String.format(
+                            "User %d fell too far behind (%d lines queued); disconnecting",
+                            userId, outbound.size()
+                    ));
+                    close();
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void flush() {
+            if (!closed.get()) {
+                loop.requestWrite(this);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            outbound.clear();
+            try {
+                channel.close();
+            } catch (IOException iox) {
+                backend.getLog().error("Failed to close the connection of user " + userId, iox);
+            }
+            backend.connectionClosed(userId);
+        }
+
+        void handleRead() {
+            int count;
+            try {
+                count = channel.read(readBuffer);
+            } catch (IOException iox) {
+                backend.getLog().error("Failed to read from user " + userId, iox);
+                close();
+                return;
+            }
+            if (count < 0) {
+                // The client closed its end; hand over a last line it did
+                // not terminate, as the blocking engine's reader does
+                if (partialLine.size() > 0) {
+                    lineComplete();
+                }
+                close();
+                return;
+            }
+            backend.getMetrics().bytesRead(count);
+            readBuffer.flip();
+            byte[] bytes = readBuffer.array();
+            int start = readBuffer.position();
+            for (int i = start; i < readBuffer.limit(); i++) {
+                if (bytes[i] == '\n') {
+                    if (!append(bytes, start, i - start)) {
+                        return;
+                    }
+                    start = i + 1;
+                    lineComplete();
+                }
+            }
+            if (append(bytes, start, readBuffer.limit() - start)) {
+                readBuffer.clear();
+            }
+        }
+
+        /**
+         * Adds bytes to the line being read, or disconnects the client if the
+         * line would grow past the limit.
+         *
+         * @return false if the client was disconnected
+         */
+        private boolean append(byte[] bytes, int offset, int length) {
+            if (partialLine.size() + length > maxLineBytes) {
+                backend.getLog().warn(String.format(
+                        "User %d sent a line longer than %d bytes; disconnecting",
+                        userId, maxLineBytes
+                ));
+                partialLine.reset();
+                close();
+                return false;
+            }
+            partialLine.write(bytes, offset, length);
+            return true;
+        }
+
+        void handleWrite() {
+            try {
+                while (true) {
+                    if (writeOffset == writeBuffers.length) {
+                        if (outbound.drainTo(batch) == 0) {
+                            break;
+                        }
+                        writeFrames = batch.toArray(new Frame[0]);
+                        writeBuffers = new ByteBuffer[writeFrames.length];
+                        for (int i = 0; i < writeBuffers.length; i++) {
+                            writeBuffers[i] = writeFrames[i].buffer();
+                        }
+                        writeOffset = 0;
+                        batch.clear();
+                    }
+                    long written = channel.write(
+                            writeBuffers, writeOffset, writeBuffers.length - writeOffset
+                    );
+                    backend.getMetrics().bytesWritten(written);
+                    while (writeOffset < writeBuffers.length
+                            && !writeBuffers[writeOffset].hasRemaining()) {
+                        backend.getLog().response(userId, writeFrames[writeOffset]);
+                        writeFrames[writeOffset].written();
+                        writeFrames[writeOffset] = null;
+                        writeBuffers[writeOffset++] = null;
+                    }
+                    if (writeOffset < writeBuffers.length) {
+                        // The socket's send buffer is full
+                        break;
+                    }
+                }
+            } catch (IOException iox) {
+                backend.getLog().error("Failed to write to user " + userId, iox);
+                close();
+                return;
+            }
+            updateInterest();
+        }
+
+        void updateInterest() {
+            if (key == null || !key.isValid()) {
+                return;
+            }
+            int ops = SelectionKey.OP_READ;
+            if (writeOffset < writeBuffers.length || !outbound.isEmpty()) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+            key.interestOps(ops);
+        }
+
+        private void lineComplete() {
+            byte[] line = partialLine.toByteArray();
+            partialLine.reset();
+            int length = line.length;
+            if (length > 0 && line[length - 1] == '\r') {
+                length--;
+            }
+            backend.lineReceived(userId, new String(line, 0, length, Frame.CHARSET));
+        }
+    }
+}
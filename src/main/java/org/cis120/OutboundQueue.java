@@ -0,0 +1,192 @@
+package org.cis120;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An {@code OutboundQueue} holds the response {@link Frame}s waiting to be
+ * written to one client.
+ *
+ * The model thread only ever adds to the queue; the lines are written out
+ * later by the networking engine serving the client. A client that reads
+ * slowly therefore fills its own queue instead of blocking dispatch to every
+ * other client. How far it may fall behind, and what happens when it falls
+ * further, is decided by the shared {@link SlowConsumerPolicy}.
+ *
+ * Only {@code MESG} lines are ever dropped. Every other response changes what
+ * the client believes about its channels, so if one of those does not fit the
+ * client is disconnected regardless of the policy's action.
+ *
+ * The queue's size, byte count and number of dropped lines can be read from
+ * any thread as gauges of the client's backlog.
+ */
+final class OutboundQueue {
+
+    private final SlowConsumerPolicy policy;
+
+    // A lock rather than a monitor, so that virtual-thread writers waiting
+    // for it do not pin their carrier threads
+    private final ReentrantLock lock;
+    private final ArrayDeque<Frame> lines;
+
+    // Written under the lock, read as gauges without it
+    private volatile int size;
+    private volatile long bytes;
+    private volatile long dropped;
+
+    /**
+     * @param policy the thresholds and action applied to this client
+     */
+    OutboundQueue(SlowConsumerPolicy policy) {
+        this.policy = policy;
+        lock = new ReentrantLock();
+        lines = new ArrayDeque<>();
+        size = 0;
+        bytes = 0;
+        dropped = 0;
+    }
+
+    /**
+     * Adds a line to the end of the queue, applying the slow-consumer policy
+     * if the queue is over one of its thresholds.
+     *
+     * @param line the encoded response line
+     * @return true if the line was queued or deliberately dropped, false if
+     *         the client should be disconnected
+     */
+    boolean offer(Frame line) {
+        long lineBytes = line.size();
+        lock.lock();
+        try {
+            if (fits(lineBytes)) {
+                add(line, lineBytes);
+                return true;
+            }
+            switch (policy.getAction()) {
+                case DROP_OLDEST:
+                    Iterator<Frame> iterator = lines.iterator();
+                    while (!fits(lineBytes) && iterator.hasNext()) {
+                        Frame queued = iterator.next();
+                        if (queued.isMessage()) {
+                            iterator.remove();
+                            removed(queued);
+                            dropped++;
+                        }
+                    }
+                    if (fits(lineBytes)) {
+                        add(line, lineBytes);
+                        return true;
+                    }
+                    return dropIfMessage(line);
+                case DROP_NEWEST:
+                    return dropIfMessage(line);
+                default:
+                    return false;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the line at the head of the queue.
+     *
+     * @return the line, or {@code null} if the queue is empty
+     */
+    Frame poll() {
+        lock.lock();
+        try {
+            Frame line = lines.poll();
+            if (line != null) {
+                removed(line);
+            }
+            return line;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes every waiting line at once, so that they can be written to the
+     * client together.
+     *
+     * @param into the collection to which the lines are added, in order
+     * @return the number of lines removed
+     */
+    int drainTo(Collection<Frame> into) {
+        lock.lock();
+        try {
+            int count = size;
+            into.addAll(lines);
+            lines.clear();
+            size = 0;
+            bytes = 0;
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Discards every waiting line.
+     */
+    void clear() {
+        lock.lock();
+        try {
+            lines.clear();
+            size = 0;
+            bytes = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return true if no lines are waiting to be written */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** @return the number of lines waiting to be written */
+    int size() {
+        return size;
+    }
+
+    /** @return the number of encoded bytes waiting to be written */
+    long bytes() {
+        return bytes;
+    }
+
+    /** @return the number of lines dropped by the policy so far */
+    long dropped() {
+        return dropped;
+    }
+
+    // ==========================================================================
+    // Private utility methods
+    // ==========================================================================
+
+    private boolean fits(long lineBytes) {
+        return size < policy.getMaxLines() && bytes + lineBytes <= policy.getMaxBytes();
+    }
+
+    private void add(Frame line, long lineBytes) {
+        lines.add(line);
+        size++;
+        bytes += lineBytes;
+    }
+
+    private void removed(Frame line) {
+        size--;
+        bytes -= line.size();
+    }
+
+    private boolean dropIfMessage(Frame line) {
+        if (line.isMessage()) {
+            dropped++;
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,206 @@
+package org.cis120;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@code RequestTracer} follows a sample of requests through the server
+ * and records when each reached every stage: read from its socket, queued
+ * for the model thread, applied to the model, handed to the recipients'
+ * connections and finally written to the last of them.
+ *
+ * One in every N requests is traced, chosen at random. With sampling off,
+ * which is the default, deciding not to trace a request is a single volatile
+ * read, and nothing else in the server does any work for tracing. A traced
+ * request carries its {@link Trace} with it, and the {@link Frame}s of its
+ * responses point back to it. Once the last of them has been written, the
+ * trace is kept in a bounded buffer that holds the most recent traces and
+ * can be read at any time. A request whose responses are dropped, or whose
+ * recipients disconnect, is never completed and leaves no trace.
+ */
+final class RequestTracer {
+
+    private final Trace[] buffer;
+    // The total number of traces completed; guarded by this
+    private long completed;
+
+    private volatile int sampling;
+
+    /**
+     * @param sampling   trace one in every this many requests, or none if 0
+     * @param bufferSize the most completed traces kept
+     */
+    RequestTracer(int sampling, int bufferSize) {
+        if (sampling < 0 || bufferSize < 1) {
+            throw new IllegalArgumentException();
+        }
+        buffer = new Trace[bufferSize];
+        completed = 0;
+        this.sampling = sampling;
+    }
+
+    /** @return trace one in every this many requests, or none if 0 */
+    int getSampling() {
+        return sampling;
+    }
+
+    /**
+     * Changes how many requests are traced, from the next request on.
+     *
+     * @param sampling trace one in every this many requests, or none if 0
+     */
+    void setSampling(int sampling) {
+        if (sampling < 0) {
+            throw new IllegalArgumentException("Sampling must be at least 0");
+        }
+        this.sampling = sampling;
+    }
+
+    /**
+     * Decides whether to trace a request that has just been read.
+     *
+     * @param userId the sender of the request
+     * @param line   the request
+     * @return a new trace, with the time the request was read, or null if the
+     *         request is not traced
+     */
+    Trace sample(int userId, String line) {
+        int every = sampling;
+        if (every == 0 || (every > 1 && ThreadLocalRandom.current().nextInt(every) != 0)) {
+            return null;
+        }
+        return new Trace(userId, line);
+    }
+
+    /**
+     * @return the completed traces still in the buffer, oldest first
+     */
+    synchronized List<Trace> getTraces() {
+        int count = (int) Math.min(completed, buffer.length);
+        List<Trace> traces = new ArrayList<>(count);
+        for (long i = completed - count; i < completed; i++) {
+            traces.add(buffer[(int) (i % buffer.length)]);
+        }
+        return traces;
+    }
+
+    /**
+     * @return the completed traces still in the buffer, oldest first, one
+     *         per line
+     */
+    String dump() {
+        StringBuilder out = new StringBuilder();
+        for (Trace trace : getTraces()) {
+            out.append(trace).append('\n');
+        }
+        return out.toString();
+    }
+
+    private synchronized void complete(Trace trace) {
+        buffer[(int) (completed % buffer.length)] = trace;
+        completed++;
+    }
+
+    // ==========================================================================
+    // Trace
+    // ==========================================================================
+
+    /**
+     * The stages one request has been through, as {@link System#nanoTime()}
+     * readings; a stage not reached yet reads 0. Each stage is stamped by the
+     * thread that handles it.
+     */
+    final class Trace {
+        private final int userId;
+        private final String command;
+        private final long read;
+        private volatile long enqueued;
+        private volatile long applyStarted;
+        private volatile long applyEnded;
+        private volatile long handedOff;
+        private volatile long lastWritten;
+        // Lines still to be written, plus one until the responses have all
+        // been handed off
+        private final AtomicInteger unwritten;
+        private volatile int lines;
+
+        private Trace(int userId, String line) {
+            read = System.nanoTime();
+            this.userId = userId;
+            int space = line.indexOf(' ');
+            command = space < 0 ? line : line.substring(0, space);
+            unwritten = new AtomicInteger(1);
+        }
+
+        void enqueued() {
+            enqueued = System.nanoTime();
+        }
+
+        /**
+         * Records when the model started and finished applying the request.
+         */
+        void applied(long started, long ended) {
+            applyStarted = started;
+            applyEnded = ended;
+        }
+
+        /**
+         * Counts one line of the responses, to one recipient, which must be
+         * written before the request is complete. Only called before
+         * {@link #handedOff()}.
+         */
+        void lineQueued() {
+            unwritten.incrementAndGet();
+            lines++;
+        }
+
+        /**
+         * Records that the responses have been handed to their recipients'
+         * connections.
+         */
+        void handedOff() {
+            handedOff = System.nanoTime();
+            lineWritten();
+        }
+
+        /**
+         * Records that one line of the responses has been written.
+         */
+        void lineWritten() {
+            if (unwritten.decrementAndGet() == 0) {
+                lastWritten = System.nanoTime();
+                complete(this);
+            }
+        }
+
+        int getUserId() {
+            return userId;
+        }
+
+        /** @return the time from reading the request to writing its last line */
+        long getTotalNanos() {
+            return lastWritten - read;
+        }
+
+        /**
+         * @return the request's stages in microseconds after it was read, for
+         *         instance {@code user 3 MESG 12 lines: enqueued +4 applied
+         *         +35..+41 handed off +77 written +310 µs}
+         */
+        @Override
+        public String toString() {
+            return "user " + userId + " " + command + " " + lines + " lines:"
+                    + " enqueued +" + micros(enqueued)
+                    + " applied +" + micros(applyStarted) + "..+" + micros(applyEnded)
+                    + " handed off +" + micros(handedOff)
+                    + " written +" + micros(lastWritten) + " µs";
+        }
+
+        private long micros(long stage) {
+            return stage == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(stage - read);
+        }
+    }
+}
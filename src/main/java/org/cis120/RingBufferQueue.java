@@ -0,0 +1,325 @@
+package org.cis120;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@code RingBufferQueue} is a bounded, pre-allocated queue for many
+ * producer threads and a single consumer thread, such as the networking
+ * threads feeding the {@link ServerBackend}'s model thread.
+ *
+ * Producers claim a slot by advancing a shared sequence with a single
+ * compare-and-set, fill it, and publish it by stamping the slot's own
+ * sequence number; the consumer reads slots in order as they are published.
+ * Nothing is allocated and no lock is taken on either side. How a thread
+ * waits for an empty queue to fill, or a full one to drain, is chosen by a
+ * {@link WaitStrategy}.
+ *
+ * Every method that removes elements or looks at the head ({@code poll},
+ * {@code take}, {@code peek}, {@code drainTo}) must only ever be called by
+ * the one consumer thread. Any thread may iterate, which takes a weakly
+ * consistent snapshot of the queued elements, so {@code contains} and
+ * {@code toString} work anywhere; removing an element other than the head
+ * is not supported.
+ *
+ * @param <E> the type of element held in the queue
+ */
+final class RingBufferQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    /**
+     * How a thread waits for the queue to change.
+     */
+    enum WaitStrategy {
+        /** Busy-spin. Lowest latency, but burns a CPU while waiting. */
+        SPIN,
+        /** Yield the CPU between checks. */
+        YIELD,
+        /** Park until woken by a producer. Uses no CPU while idle. */
+        PARK
+    }
+
+    // How long a producer waiting for a full queue to drain parks between
+    // checks; the consumer never wakes producers up
+    private static final long PRODUCER_PARK_NANOS = 50_000;
+
+    private final Object[] elements;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+
+    // Slot i is free for the producer claiming sequence s when its stamp is
+    // s, and holds the element published at sequence s when its stamp is
+    // s + 1
+    private final AtomicLongArray stamps;
+    private final AtomicLong tail;
+
+    // Only written by the consumer; volatile so that size() can read it
+    private volatile long head;
+    private volatile Thread waitingConsumer;
+
+    /**
+     * @param capacity     the most elements the queue can hold; rounded up to
+     *                     a power of two of at least 2
+     * @param waitStrategy how threads wait for the queue to change
+     */
+    RingBufferQueue(int capacity, WaitStrategy waitStrategy) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        if (waitStrategy == null) {
+            throw new NullPointerException();
+        }
+        // At least two slots, or a full slot's stamp would read as free
+        int size = Math.max(2, Integer.highestOneBit(capacity));
+        if (size < capacity) {
+            size <<= 1;
+        }
+        elements = new Object[size];
+        mask = size - 1;
+        this.waitStrategy = waitStrategy;
+        stamps = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            stamps.set(i, i);
+        }
+        tail = new AtomicLong();
+        head = 0;
+        waitingConsumer = null;
+    }
+
+    // ==========================================================================
+    // Producers
+    // ==========================================================================
+
+    @Override
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        while (true) {
+            long sequence = tail.get();
+            int index = (int) sequence & mask;
+            long stamp = stamps.get(index);
+            if (stamp == sequence) {
+                if (tail.compareAndSet(sequence, sequence + 1)) {
+                    elements[index] = e;
+                    // A volatile write, so that the read of waitingConsumer
+                    // below cannot be reordered before it
+                    stamps.set(index, sequence + 1);
+                    Thread consumer = waitingConsumer;
+                    if (consumer != null) {
+                        LockSupport.unpark(consumer);
+                    }
+                    return true;
+                }
+            } else if (stamp < sequence) {
+                // The consumer has not yet freed this slot: the queue is full
+                return false;
+            }
+            // Another producer claimed the sequence first; try the next one
+        }
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        while (!offer(e)) {
+            awaitSpace();
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!offer(e)) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            awaitSpace();
+        }
+        return true;
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return elements.length - size();
+    }
+
+    // ==========================================================================
+    // Consumer
+    // ==========================================================================
+
+    @Override
+    public E poll() {
+        long sequence = head;
+        int index = (int) sequence & mask;
+        if (stamps.get(index) != sequence + 1) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        E e = (E) elements[index];
+        elements[index] = null;
+        stamps.lazySet(index, sequence + elements.length);
+        head = sequence + 1;
+        return e;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        E e;
+        while ((e = poll()) == null) {
+            awaitElement(0);
+        }
+        return e;
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        E e;
+        while ((e = poll()) == null) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            awaitElement(remaining);
+        }
+        return e;
+    }
+
+    @Override
+    public E peek() {
+        long sequence = head;
+        int index = (int) sequence & mask;
+        if (stamps.get(index) != sequence + 1) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        E e = (E) elements[index];
+        return e;
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        int count = 0;
+        E e;
+        while (count < maxElements && (e = poll()) != null) {
+            c.add(e);
+            count++;
+        }
+        return count;
+    }
+
+    // ==========================================================================
+    // Size
+    // ==========================================================================
+
+    /**
+     * @return the number of elements claimed by producers and not yet taken by
+     *         the consumer; exact only while no producer is mid-offer
+     */
+    @Override
+    public int size() {
+        long size = tail.get() - head;
+        return (int) Math.max(0, Math.min(size, elements.length));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return peek() == null;
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the elements queued when it is
+     * made, head first. Elements offered or taken meanwhile may or may not be
+     * included, and none is seen twice. The iterator does not support
+     * {@code remove}.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        List<E> snapshot = new ArrayList<>();
+        long end = tail.get();
+        for (long sequence = head; sequence < end; sequence++) {
+            int index = (int) sequence & mask;
+            if (stamps.get(index) != sequence + 1) {
+                // Not yet published, or already taken
+                continue;
+            }
+            @SuppressWarnings("unchecked")
+            E e = (E) elements[index];
+            // Still the element published at this sequence once read
+            if (e != null && stamps.get(index) == sequence + 1) {
+                snapshot.add(e);
+            }
+        }
+        return Collections.unmodifiableList(snapshot).iterator();
+    }
+
+    // ==========================================================================
+    // Private utility methods
+    // ==========================================================================
+
+    /**
+     * Waits, once, for a producer to publish an element.
+     *
+     * @param timeoutNanos the longest time to wait, or 0 for no limit
+     */
+    private void awaitElement(long timeoutNanos) throws InterruptedException {
+        switch (waitStrategy) {
+            case SPIN:
+                break;
+            case YIELD:
+                Thread.yield();
+                break;
+            default:
+                waitingConsumer = Thread.currentThread();
+                // Producers read waitingConsumer after publishing, so either
+                // this check sees their element or they see this thread
+                if (peek() == null) {
+                    if (timeoutNanos > 0) {
+                        LockSupport.parkNanos(this, timeoutNanos);
+                    } else {
+                        LockSupport.park(this);
+                    }
+                }
+                waitingConsumer = null;
+                break;
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    /**
+     * Waits, once, for the consumer to free a slot.
+     */
+    private void awaitSpace() throws InterruptedException {
+        switch (waitStrategy) {
+            case SPIN:
+                break;
+            case YIELD:
+                Thread.yield();
+                break;
+            default:
+                LockSupport.parkNanos(this, PRODUCER_PARK_NANOS);
+                break;
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+}
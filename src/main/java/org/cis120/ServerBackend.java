@@ -1,79 +1,328 @@
 package org.cis120;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 
 /**
  * The {@code ServerBackend} handles networking and communication with clients,
  * and is responsible for managing the server state and executing tasks. To
  * run the server, you should see the {@link ServerMain} class.
  *
- * You do not need to modify this file.
+ * Clients are served by one of several networking engines, chosen at startup
+ * by {@link ServerConfig#getIoMode()}: the original blocking engine, with one
+ * {@link ConnectionWorker} per client running on a platform or a virtual
+ * thread, or the {@link NioEngine}. All of them feed the same task queue,
+ * which is drained by a single model thread.
  */
 final class ServerBackend implements Runnable {
 
+    // The number of channels in the model's published snapshot of its
+    // largest channels
+    private static final int LARGEST_CHANNELS = 10;
+
     // The ServerModel is NOT thread-safe; it should only be touched on the
-    // model thread after being initialized.
+    // model thread, or by a shard thread while the model thread hands it the
+    // shard, after being initialized.
     private final ServerModel model;
+    private final ServerConfig config;
+    private final SlowConsumerPolicy slowConsumerPolicy;
+    private final ServerLog log;
+    private final ServerMetrics metrics;
+    private final RequestTracer tracer;
 
     private final BlockingQueue<Task> taskQueue;
+    private volatile int batchSize;
+
+    // The tasks being applied, and the model thread's own dispatcher; only
+    // touched on the model thread
+    private final List<Task> batch;
+    private final Dispatcher dispatcher;
+
+    // Tasks raised on the model thread or a shard thread, which must never
+    // wait on the task queue
+    private final Queue<Task> deferred;
+
+    // One single-threaded executor, and the dispatcher used on its thread,
+    // per model shard; null when the model has a single shard, whose tasks
+    // all run on the model thread
+    private final ExecutorService[] shardExecutors;
+    private final Dispatcher[] shardDispatchers;
+    private final Set<Thread> shardThreads;
 
     private volatile ServerSocket serverSocket;
-    private final Map<Integer, Socket> openSockets;
+    private volatile NioEngine nioEngine;
+    private volatile MetricsEndpoint metricsEndpoint;
+    private volatile ObjectName managementName;
+    // Set while a Snapshot task is waiting for the model thread
+    private volatile boolean snapshotQueued;
+    // Concurrent rather than synchronized: a virtual thread that blocks on a
+    // monitor pins its carrier thread
+    private final Map<Integer, Connection> connections;
 
     private volatile boolean running;
     private volatile Thread modelThread;
 
+    // Only touched by the thread accepting connections
+    private int nextId;
+
     public ServerBackend(ServerModel model) {
-        if (model == null) {
+        this(model, ServerConfig.defaults());
+    }
+
+    public ServerBackend(ServerModel model, ServerConfig config) {
+        if (model == null || config == null) {
             throw new NullPointerException();
         }
         this.model = model;
-        taskQueue = new LinkedBlockingQueue<>();
+        this.config = config;
+        slowConsumerPolicy = config.getSlowConsumerPolicy();
+        log = config.createLog();
+        metrics = new ServerMetrics();
+        tracer = config.createTracer();
+        taskQueue = config.createTaskQueue();
+        batchSize = config.getModelBatchSize();
+        batch = new ArrayList<>(batchSize);
+        dispatcher = new Dispatcher();
+        deferred = new ConcurrentLinkedQueue<>();
+        shardThreads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+        int shardCount = model.getShardCount();
+        if (shardCount > 1) {
+            shardExecutors = new ExecutorService[shardCount];
+            shardDispatchers = new Dispatcher[shardCount];
+            for (int i = 0; i < shardCount; i++) {
+                shardExecutors[i] = Executors.newSingleThreadExecutor(newShardThreadFactory(i));
+                shardDispatchers[i] = new Dispatcher();
+            }
+        } else {
+            shardExecutors = null;
+            shardDispatchers = null;
+        }
         serverSocket = null;
-        openSockets = Collections.synchronizedMap(new HashMap<Integer, Socket>());
+        nioEngine = null;
+        metricsEndpoint = null;
+        managementName = null;
+        snapshotQueued = false;
+        connections = new ConcurrentHashMap<>();
         running = false;
         modelThread = null;
+        nextId = 0;
     }
 
     public boolean isRunning() {
         return running;
     }
 
+    /**
+     * @return the policy applied to clients that fall behind; changes to it
+     *         take effect immediately
+     */
+    SlowConsumerPolicy getSlowConsumerPolicy() {
+        return slowConsumerPolicy;
+    }
+
+    /**
+     * @return the log of requests, responses and errors; changes to its level
+     *         and sampling take effect immediately
+     */
+    ServerLog getLog() {
+        return log;
+    }
+
+    /**
+     * @return the counts of the server's traffic, which any thread may read
+     */
+    ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the tracer following a sample of requests; changes to its
+     *         sampling take effect immediately
+     */
+    RequestTracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * @return the most tasks the model thread applies before dispatching their
+     *         responses together
+     */
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Changes the most tasks the model thread applies before dispatching their
+     * responses together, from its next batch on.
+     *
+     * @param batchSize the new batch size, at least 1
+     */
+    void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /** @return the number of open connections; safe to call from any thread */
+    int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * @return the number of tasks waiting for the model thread; safe to call
+     *         from any thread
+     */
+    int getTaskQueueDepth() {
+        return taskQueue.size();
+    }
+
+    /**
+     * Renders the server's metrics and its current users, channels,
+     * connections and task queue depth in the Prometheus text exposition
+     * format. Safe to call from any thread; nothing it reads belongs to the
+     * model thread.
+     *
+     * @return the metrics, one sample per line
+     */
+    String renderMetrics() {
+        StringBuilder out = new StringBuilder(4096);
+        ServerMetrics.writeGauge(out, "pennpals_users", "Registered users", model.getUserCount());
+        ServerMetrics.writeGauge(out, "pennpals_channels", "Channels", model.getChannelCount());
+        ServerMetrics.writeGauge(out, "pennpals_connections", "Open connections",
+                getConnectionCount());
+        ServerMetrics.writeGauge(out, "pennpals_task_queue_depth",
+                "Tasks waiting for the model thread", getTaskQueueDepth());
+        metrics.writeTo(out);
+        return out.toString();
+    }
+
+    /**
+     * Reads the backlog gauges of every connected client. Safe to call from
+     * any thread.
+     *
+     * @return the backlog of each open connection
+     */
+    List<Backlog> getBacklogs() {
+        List<Backlog> backlogs = new ArrayList<>();
+        for (Connection connection : connections.values()) {
+            backlogs.add(new Backlog(connection.getUserId(), connection.getOutbound()));
+        }
+        return backlogs;
+    }
+
     @Override
     public void run() {
         running = true;
 
-        // Attempt to open the ServerSocket; abort on failure
+        // Attempt to open the listening socket; abort on failure
+        ExecutorService workerPool = null;
         try {
-            serverSocket = new ServerSocket(21212);
-        } catch (IOException iox) {
-            iox.printStackTrace();
+            ServerConfig.IoMode ioMode = config.getIoMode();
+            if (ioMode == ServerConfig.IoMode.NIO) {
+                nioEngine = new NioEngine(
+                        this, config.getPort(), config.getIoThreads(), config.getMaxLineBytes()
+                );
+            } else {
+                if (ioMode == ServerConfig.IoMode.VIRTUAL) {
+                    workerPool = VirtualThreads.newExecutor();
+                } else {
+                    workerPool = Executors.newCachedThreadPool();
+                }
+                serverSocket = new ServerSocket(config.getPort());
+            }
+        } catch (IOException | RuntimeException x) {
+            x.printStackTrace();
             running = false;
+            if (workerPool != null) {
+                workerPool.shutdown();
+            }
             serverSocket = null;
+            nioEngine = null;
+            log.close();
+            return;
         }
+        openMetricsEndpoint();
+        registerManagement();
+
+        // Publish the model's largest channels periodically, for the
+        // management bean, but only if a channel's membership has changed
+        // since the last time: publishing stops every shard
+        final ScheduledExecutorService snapshots =
+                Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "Model snapshots");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        long snapshotMillis = config.getModelSnapshotMillis();
+        snapshots.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                if (!snapshotQueued && model.isLargestChannelsStale()) {
+                    snapshotQueued = true;
+                    enqueue(new Snapshot());
+                }
+            }
+        }, 0, snapshotMillis, TimeUnit.MILLISECONDS);
 
         // Start the model thread
         modelThread = new Thread(new Runnable() {
             @Override
             public void run() {
-                while (running || !taskQueue.isEmpty()) {
-                    Task task;
+                long flushWindow = TimeUnit.MICROSECONDS.toNanos(config.getFlushWindowMicros());
+                long flushDeadline = 0;
+                while (running || !taskQueue.isEmpty() || !deferred.isEmpty()) {
                     try {
-                        task = taskQueue.take();
+                        Task task;
+                        while ((task = deferred.poll()) != null) {
+                            batch.add(task);
+                        }
+                        if (batch.isEmpty() && dispatcher.isFlushed()) {
+                            batch.add(taskQueue.take());
+                        }
                     } catch (InterruptedException ix) {
                         continue;
                     }
-                    try {
-                        dispatchBroadcast(task.getBroadcast());
-                    } catch (RuntimeException rx) {
-                        rx.printStackTrace();
+                    // The batch size may have been lowered below the
+                    // number of deferred tasks
+                    taskQueue.drainTo(batch, Math.max(0, batchSize - batch.size()));
+                    boolean drained = batch.isEmpty();
+                    if (!drained) {
+                        boolean wasFlushed = dispatcher.isFlushed();
+                        processBatch();
+                        if (wasFlushed) {
+                            flushDeadline = System.nanoTime() + flushWindow;
+                        }
+                    }
+                    // Flush once the queue runs dry, or once the oldest
+                    // unflushed response has waited for the whole window
+                    if (drained || System.nanoTime() - flushDeadline >= 0) {
+                        dispatcher.flush();
+                    }
+                }
+                dispatcher.flush();
+                snapshots.shutdown();
+                if (shardExecutors != null) {
+                    for (ExecutorService executor : shardExecutors) {
+                        executor.shutdown();
                     }
                 }
 
@@ -82,22 +331,36 @@ final class ServerBackend implements Runnable {
                         serverSocket.close();
                     }
                 } catch (IOException iox) {
-                    iox.printStackTrace();
+                    log.error("Failed to close the server socket", iox);
                 }
             }
         }, "Model thread");
         modelThread.start();
 
+        if (nioEngine != null) {
+            try {
+                nioEngine.run();
+            } finally {
+                running = false;
+                nioEngine = null;
+                closeConnections();
+                closeMetricsEndpoint();
+                unregisterManagement();
+                closeLog();
+            }
+            return;
+        }
+
         // Await new connections on the current thread
-        ExecutorService workerPool = Executors.newCachedThreadPool();
         try {
-            int nextId = 0;
             while (running && !serverSocket.isClosed()) {
-                int userId = nextId++;
+                int userId = nextUserId();
                 Socket clientSocket = serverSocket.accept();
-                openSockets.put(userId, clientSocket);
-                taskQueue.add(new Registration(userId));
-                workerPool.execute(new ConnectionWorker(userId, clientSocket));
+                SocketConnection connection = new SocketConnection(
+                        userId, clientSocket, workerPool
+                );
+                connectionOpened(connection);
+                workerPool.execute(new ConnectionWorker(connection));
             }
         } catch (IOException iox) {
             iox.printStackTrace();
@@ -113,20 +376,10 @@ final class ServerBackend implements Runnable {
             } finally {
                 serverSocket = null;
             }
-
-            synchronized (openSockets) {
-                Iterator<Socket> iterator = openSockets.values().iterator();
-                while (iterator.hasNext()) {
-                    Socket clientSocket = iterator.next();
-                    try {
-                        clientSocket.close();
-                    } catch (IOException iox) {
-                        iox.printStackTrace();
-                    } finally {
-                        iterator.remove();
-                    }
-                }
-            }
+            closeConnections();
+            closeMetricsEndpoint();
+            unregisterManagement();
+            closeLog();
         }
     }
 
@@ -139,87 +392,648 @@ final class ServerBackend implements Runnable {
                 iox.printStackTrace();
             }
         }
+        NioEngine engine = nioEngine;
+        if (engine != null) {
+            engine.close();
+        }
         if (modelThread != null) {
             modelThread.interrupt();
         }
     }
 
+    private void openMetricsEndpoint() {
+        int port = config.getMetricsPort();
+        if (port == 0) {
+            return;
+        }
+        try {
+            MetricsEndpoint endpoint = new MetricsEndpoint(port, this);
+            endpoint.start();
+            metricsEndpoint = endpoint;
+        } catch (IOException iox) {
+            // The server is still usable without its metrics
+            log.error("Failed to open the metrics endpoint on port " + port, iox);
+        }
+    }
+
+    private void closeMetricsEndpoint() {
+        MetricsEndpoint endpoint = metricsEndpoint;
+        if (endpoint != null) {
+            metricsEndpoint = null;
+            endpoint.stop();
+        }
+    }
+
+    /**
+     * Registers the {@link ServerManagement} bean with the platform MBean
+     * server, named after the port the server listens on.
+     */
+    private void registerManagement() {
+        try {
+            ObjectName name = new ObjectName(
+                    "org.cis120:type=ServerBackend,port=" + config.getPort()
+            );
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(
+                    new StandardMBean(
+                            new ServerManagement(this, model), ServerManagementMBean.class
+                    ),
+                    name
+            );
+            managementName = name;
+        } catch (JMException jmx) {
+            // The server is still usable without its management bean
+            log.error("Failed to register the management bean", jmx);
+        }
+    }
+
+    private void unregisterManagement() {
+        ObjectName name = managementName;
+        if (name != null) {
+            managementName = null;
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (JMException jmx) {
+                log.error("Failed to unregister the management bean", jmx);
+            }
+        }
+    }
+
+    private void closeConnections() {
+        Iterator<Connection> iterator = connections.values().iterator();
+        while (iterator.hasNext()) {
+            Connection connection = iterator.next();
+            iterator.remove();
+            connection.close();
+        }
+    }
+
+    /**
+     * Waits for the model thread to finish the tasks already queued, which
+     * may still log, then stops the log's background thread.
+     */
+    private void closeLog() {
+        Thread thread = modelThread;
+        if (thread != null) {
+            // Wakes the model thread if it is waiting for a task
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException ix) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        log.close();
+    }
+
     // ==========================================================================
-    // Broadcast dispatch
+    // Connection events
     // ==========================================================================
 
-    private void dispatchBroadcast(Broadcast broadcast) {
-        if (broadcast == null) {
+    /**
+     * Allocates the user ID of a newly accepted client. Must only be called by
+     * the thread accepting connections.
+     */
+    int nextUserId() {
+        return nextId++;
+    }
+
+    /**
+     * Called by a networking engine once a client has been accepted, before
+     * any of its requests are read.
+     */
+    void connectionOpened(Connection connection) {
+        int userId = connection.getUserId();
+        connections.put(userId, connection);
+        metrics.connectionOpened();
+        enqueue(new Registration(userId));
+    }
+
+    /**
+     * Called by a networking engine for each line received from a client.
+     */
+    void lineReceived(int userId, String line) {
+        RequestTracer.Trace trace = tracer.sample(userId, line);
+        String payload;
+        if (line.startsWith(":")) {
+            int index = line.indexOf(' ');
+            payload = line.substring(index + 1);
+        } else {
+            payload = line;
+        }
+        if (trace != null) {
+            // Before enqueue: once queued, the request may be applied at once
+            trace.enqueued();
+        }
+        enqueue(new Request(userId, line, payload, trace));
+    }
+
+    /**
+     * Called by a networking engine once a client's connection is gone, which
+     * includes connections closed because the client fell too far behind.
+     */
+    void connectionClosed(int userId) {
+        if (connections.remove(userId) != null) {
+            metrics.connectionClosed();
+            enqueue(new Disconnection(userId));
+        }
+    }
+
+    /**
+     * Hands a task to the model thread. If the task queue is bounded and full,
+     * the calling networking thread waits, which stops it reading from its
+     * clients until the model thread catches up. Tasks raised on the model
+     * thread or a shard thread, such as the disconnection of a client that
+     * fell behind, are applied with the next batch instead.
+     */
+    private void enqueue(Task task) {
+        Thread current = Thread.currentThread();
+        if (current == modelThread) {
+            deferred.add(task);
             return;
+        } else if (shardThreads.contains(current)) {
+            deferred.add(task);
+            // Wake the model thread if it is waiting for the task queue
+            modelThread.interrupt();
+            return;
+        }
+        try {
+            while (!taskQueue.offer(task, 100, TimeUnit.MILLISECONDS)) {
+                if (!running) {
+                    // Nothing will drain the queue any more
+                    return;
+                }
+            }
+        } catch (InterruptedException ix) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ==========================================================================
+    // Broadcast dispatch
+    // ==========================================================================
+
+    /**
+     * Applies every task in the current batch to the model. With a single
+     * shard, every task is applied on the model thread, in order, and each
+     * recipient is then handed everything the batch produced for it in a
+     * single {@link Connection#send(List)}. This only queues the lines; they
+     * are written out when the model thread's dispatcher is flushed, together
+     * with anything else queued for the same clients in the meantime.
+     *
+     * With several shards, the model thread hands each shard the tasks for its
+     * channels, to be applied and dispatched on the shard's own thread, so
+     * tasks for one channel are applied in order and tasks for channels in
+     * different shards in parallel. A task that may touch the whole model
+     * (connections, disconnections and {@code NICK}) is a barrier: the model
+     * thread waits for every shard to finish the tasks handed to it so far,
+     * and applies the task itself while the shards are idle. The registered
+     * users therefore never change while a shard is running.
+     */
+    private void processBatch() {
+        List<List<Task>> shardTasks = null;
+        if (shardExecutors != null) {
+            shardTasks = new ArrayList<>(shardExecutors.length);
+            for (int i = 0; i < shardExecutors.length; i++) {
+                shardTasks.add(new ArrayList<Task>());
+            }
+        }
+        try {
+            for (Task task : batch) {
+                int shard;
+                try {
+                    shard = task.route();
+                } catch (RuntimeException rx) {
+                    log.error("Failed to process a request", rx);
+                    continue;
+                }
+                if (shardTasks == null) {
+                    dispatcher.apply(task);
+                } else if (shard >= 0) {
+                    shardTasks.get(shard).add(task);
+                } else {
+                    submitShardTasks(shardTasks);
+                    awaitShards();
+                    dispatcher.apply(task);
+                    dispatcher.send();
+                }
+            }
+            if (shardTasks == null) {
+                dispatcher.send();
+            } else {
+                submitShardTasks(shardTasks);
+            }
+        } finally {
+            batch.clear();
         }
+    }
 
-        Map<Integer, List<String>> responses = broadcast.getResponses(model);
-        for (int userId : responses.keySet()) {
+    private void submitShardTasks(List<List<Task>> shardTasks) {
+        for (int i = 0; i < shardExecutors.length; i++) {
+            final List<Task> tasks = shardTasks.get(i);
+            if (tasks.isEmpty()) {
+                continue;
+            }
+            shardTasks.set(i, new ArrayList<Task>());
+            final Dispatcher shardDispatcher = shardDispatchers[i];
+            shardExecutors[i].execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (Task task : tasks) {
+                        shardDispatcher.apply(task);
+                    }
+                    shardDispatcher.send();
+                    shardDispatcher.flush();
+                }
+            });
+        }
+    }
+
+    /**
+     * Waits until every shard has finished the tasks handed to it so far.
+     */
+    private void awaitShards() {
+        List<Future<?>> barriers = new ArrayList<>(shardExecutors.length);
+        for (ExecutorService executor : shardExecutors) {
+            barriers.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }));
+        }
+        boolean interrupted = false;
+        for (Future<?> barrier : barriers) {
+            while (true) {
+                try {
+                    barrier.get();
+                    break;
+                } catch (InterruptedException ix) {
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            // Let the model loop see the interruption once the barrier is done
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ThreadFactory newShardThreadFactory(final int shard) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Model shard " + shard);
+                shardThreads.add(thread);
+                return thread;
+            }
+        };
+    }
+
+    // ==========================================================================
+    // Dispatcher
+    // ==========================================================================
+
+    /**
+     * Turns the {@link Broadcast}s of applied tasks into lines queued on each
+     * recipient's connection. Every thread that applies tasks has its own
+     * dispatcher.
+     *
+     * A {@link Broadcast} hands every recipient of the same response the same
+     * string instance, so each distinct response is encoded into a
+     * {@link Frame} once, however many clients receive it. Responses usually
+     * arrive as one line for many recipients in a row, so the last line and
+     * its frame are kept at hand.
+     */
+    private final class Dispatcher implements Broadcast.Visitor {
+        // The responses produced for each recipient since the last send,
+        // connections with responses queued since their last flush, and the
+        // frames encoded since the last send
+        private final Map<Integer, List<Frame>> pending;
+        private final Set<Connection> unflushed;
+        private final Map<String, Frame> frames;
+        private String lastLine;
+        private Frame lastFrame;
+        // Time spent visiting responses since the last send, in nanoseconds
+        private long visitNanos;
+        // The traces of the requests applied since the last send, and the
+        // one whose responses are being visited, if any
+        private final List<RequestTracer.Trace> traces;
+        private RequestTracer.Trace tracing;
+
+        Dispatcher() {
+            pending = new LinkedHashMap<>();
+            unflushed = new HashSet<>();
+            frames = new IdentityHashMap<>();
+            lastLine = null;
+            lastFrame = null;
+            visitNanos = 0;
+            traces = new ArrayList<>();
+            tracing = null;
+        }
+
+        /**
+         * Applies a task to the model and collects its responses.
+         */
+        void apply(Task task) {
+            RequestTracer.Trace trace = task.getTrace();
             try {
-                Socket clientSocket = openSockets.get(userId);
-                PrintWriter pw = new PrintWriter(clientSocket.getOutputStream());
-                for (String response : responses.get(userId)) {
-                    pw.println(response);
-                    pw.flush();
-                    System.out.printf(
-                            "Response sent to user %d: \"%s\"\n",
-                            userId, response
-                    );
+                long start = System.nanoTime();
+                Broadcast broadcast = task.getBroadcast();
+                long applied = System.nanoTime();
+                metrics.applied(applied - start);
+                if (trace != null) {
+                    trace.applied(start, applied);
+                    traces.add(trace);
+                    // A traced request's lines get frames of their own,
+                    // which point back to its trace
+                    tracing = trace;
+                    forgetFrames();
                 }
-                pw.flush();
-            } catch (IOException iox) {
-                iox.printStackTrace();
+                if (broadcast != null) {
+                    metrics.responded(broadcast);
+                    // Nicknames are resolved now, before a later task can
+                    // change them
+                    broadcast.forEachResponse(model, this);
+                    visitNanos += System.nanoTime() - applied;
+                }
+            } catch (RuntimeException rx) {
+                log.error("Failed to process a request", rx);
+            } finally {
+                if (trace != null) {
+                    tracing = null;
+                    forgetFrames();
+                }
+            }
+        }
+
+        /**
+         * Hands each recipient everything collected for it since the last
+         * send, in a single {@link Connection#send(List)}.
+         */
+        void send() {
+            long start = System.nanoTime();
+            boolean dispatched = !pending.isEmpty();
+            for (RequestTracer.Trace trace : traces) {
+                trace.handedOff();
+            }
+            traces.clear();
+            try {
+                for (Map.Entry<Integer, List<Frame>> entry : pending.entrySet()) {
+                    Connection connection = connections.get(entry.getKey());
+                    if (connection != null) {
+                        connection.send(entry.getValue());
+                        unflushed.add(connection);
+                    }
+                }
+            } finally {
+                pending.clear();
+                forgetFrames();
+                if (dispatched) {
+                    metrics.dispatched(visitNanos + System.nanoTime() - start);
+                }
+                visitNanos = 0;
             }
         }
+
+        /**
+         * Asks every connection that has been sent responses since the last
+         * flush to write them out.
+         */
+        void flush() {
+            for (Connection connection : unflushed) {
+                connection.flush();
+            }
+            unflushed.clear();
+        }
+
+        /** @return true if no connection is waiting to be flushed */
+        boolean isFlushed() {
+            return unflushed.isEmpty();
+        }
+
+        /**
+         * Queues a response for its recipient, encoding each distinct line
+         * once.
+         */
+        @Override
+        public void visit(int userId, String response) {
+            if (response != lastLine) {
+                Frame frame = frames.get(response);
+                if (frame == null) {
+                    frame = Frame.of(response, tracing);
+                    frames.put(response, frame);
+                }
+                lastLine = response;
+                lastFrame = frame;
+            }
+            List<Frame> lines = pending.get(userId);
+            if (lines == null) {
+                lines = new ArrayList<>(2);
+                pending.put(userId, lines);
+            }
+            lines.add(lastFrame);
+            if (tracing != null) {
+                tracing.lineQueued();
+            }
+        }
+
+        private void forgetFrames() {
+            frames.clear();
+            lastLine = null;
+            lastFrame = null;
+        }
     }
 
     // ==========================================================================
-    // ConnectionWorker
+    // SocketConnection
     // ==========================================================================
 
-    private final class ConnectionWorker implements Runnable {
+    /**
+     * A client served by the blocking engine. Responses are queued by the model
+     * thread and written by a drain task on the worker pool, which is only
+     * scheduled after a flush. A worker is therefore tied up by a client only
+     * while that client is actually being written to. Each pass of the drain
+     * task writes everything queued so far with a single socket write.
+     */
+    private final class SocketConnection implements Connection {
         private final int userId;
         private final Socket clientSocket;
+        private final ExecutorService workerPool;
+        private final OutboundQueue outbound;
+        private final AtomicBoolean drainScheduled;
+        private final AtomicBoolean closed;
 
-        public ConnectionWorker(int userId, Socket clientSocket) {
+        // Only touched by the drain task, which never runs concurrently
+        private OutputStream out;
+
+        public SocketConnection(int userId, Socket clientSocket, ExecutorService workerPool) {
             this.userId = userId;
             this.clientSocket = clientSocket;
+            this.workerPool = workerPool;
+            outbound = new OutboundQueue(slowConsumerPolicy);
+            drainScheduled = new AtomicBoolean(false);
+            closed = new AtomicBoolean(false);
+            out = null;
+        }
+
+        @Override
+        public int getUserId() {
+            return userId;
+        }
+
+        @Override
+        public OutboundQueue getOutbound() {
+            return outbound;
+        }
+
+        @Override
+        public void send(List<Frame> responses) {
+            if (closed.get()) {
+                return;
+            }
+            for (Frame response : responses) {
+                if (!outbound.offer(response)) {
+                    log.warn(String.format(
+                            "User %d fell too far behind (%d lines queued); disconnecting",
+                            userId, outbound.size()
+                    ));
+                    close();
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void flush() {
+            if (closed.get() || outbound.isEmpty()) {
+                return;
+            }
+            if (drainScheduled.compareAndSet(false, true)) {
+                try {
+                    workerPool.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            drain();
+                        }
+                    });
+                } catch (RejectedExecutionException rex) {
+                    close();
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            outbound.clear();
+            try {
+                clientSocket.close();
+            } catch (IOException iox) {
+                log.error("Failed to close the connection of user " + userId, iox);
+            }
+            connectionClosed(userId);
+        }
+
+        private void drain() {
+            List<Frame> batch = new ArrayList<>();
+            ByteArrayOutputStream gathered = new ByteArrayOutputStream();
+            try {
+                if (out == null) {
+                    out = clientSocket.getOutputStream();
+                }
+                do {
+                    while (!closed.get() && outbound.drainTo(batch) > 0) {
+                        for (Frame response : batch) {
+                            response.writeTo(gathered);
+                        }
+                        gathered.writeTo(out);
+                        out.flush();
+                        metrics.bytesWritten(gathered.size());
+                        for (Frame response : batch) {
+                            log.response(userId, response);
+                            response.written();
+                        }
+                        batch.clear();
+                        gathered.reset();
+                    }
+                    drainScheduled.set(false);
+                    // Lines queued after the last drain but before the flag
+                    // was cleared would otherwise have no task to write them
+                } while (!outbound.isEmpty() && drainScheduled.compareAndSet(false, true));
+            } catch (IOException iox) {
+                if (!closed.get()) {
+                    log.error("Failed to write to user " + userId, iox);
+                }
+                close();
+            }
+        }
+    }
+
+    // ==========================================================================
+    // ConnectionWorker
+    // ==========================================================================
+
+    private final class ConnectionWorker implements Runnable {
+        private final SocketConnection connection;
+
+        public ConnectionWorker(SocketConnection connection) {
+            this.connection = connection;
         }
 
         @Override
         public void run() {
+            Socket clientSocket = connection.clientSocket;
             try (
-                    BufferedReader reader = new BufferedReader(
-                            new InputStreamReader(clientSocket.getInputStream())
-                    )) {
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(
+                            new CountingInputStream(clientSocket.getInputStream()), Frame.CHARSET
+                    ))) {
                 while (running && !clientSocket.isClosed()) {
                     String line = reader.readLine();
                     if (line != null) {
-                        System.out.printf(
-                                "Request received from user %d: " +
-                                        "\"%s\"\n",
-                                userId, line
-                        );
-                        String payload;
-                        if (line.startsWith(":")) {
-                            int index = line.indexOf(' ');
-                            payload = line.substring(index + 1);
-                        } else {
-                            payload = line;
-                        }
-                        Request request = new Request(userId, payload);
-                        taskQueue.add(request);
+                        lineReceived(connection.getUserId(), line);
                     } else {
-                        clientSocket.close();
-                        taskQueue.add(new Disconnection(userId));
+                        break;
                     }
                 }
             } catch (IOException iox) {
-                iox.printStackTrace();
-                taskQueue.add(new Disconnection(userId));
+                if (!clientSocket.isClosed()) {
+                    log.error("Failed to read from user " + connection.getUserId(), iox);
+                }
             } finally {
-                openSockets.remove(userId);
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes read from a client's socket in the server's metrics.
+     */
+    private final class CountingInputStream extends FilterInputStream {
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                metrics.bytesRead(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            if (count > 0) {
+                metrics.bytesRead(count);
             }
+            return count;
         }
     }
 
@@ -228,7 +1042,18 @@ final class ServerBackend implements Runnable {
     // ==========================================================================
 
     private interface Task {
+        /**
+         * Prepares the task on the model thread, before it is applied.
+         *
+         * @return the model shard the task touches, or -1 if it may touch the
+         *         whole model
+         */
+        int route();
+
         Broadcast getBroadcast();
+
+        /** @return the trace following the task, or null if it is not traced */
+        RequestTracer.Trace getTrace();
     }
 
     /**
@@ -241,10 +1066,20 @@ final class ServerBackend implements Runnable {
             this.userId = userId;
         }
 
+        @Override
+        public int route() {
+            return -1;
+        }
+
         @Override
         public Broadcast getBroadcast() {
             return model.registerUser(userId);
         }
+
+        @Override
+        public RequestTracer.Trace getTrace() {
+            return null;
+        }
     }
 
     /**
@@ -257,10 +1092,44 @@ final class ServerBackend implements Runnable {
             this.userId = userId;
         }
 
+        @Override
+        public int route() {
+            return -1;
+        }
+
         @Override
         public Broadcast getBroadcast() {
             return model.deregisterUser(userId);
         }
+
+        @Override
+        public RequestTracer.Trace getTrace() {
+            return null;
+        }
+    }
+
+    /**
+     * Publishes the model's largest channels. Like a disconnection, it may
+     * touch the whole model, so it runs while every shard is idle; it is
+     * therefore only queued when the published channels are out of date.
+     */
+    private final class Snapshot implements Task {
+        @Override
+        public int route() {
+            return -1;
+        }
+
+        @Override
+        public Broadcast getBroadcast() {
+            snapshotQueued = false;
+            model.publishLargestChannels(LARGEST_CHANNELS);
+            return null;
+        }
+
+        @Override
+        public RequestTracer.Trace getTrace() {
+            return null;
+        }
     }
 
     /**
@@ -268,22 +1137,54 @@ final class ServerBackend implements Runnable {
      */
     private final class Request implements Task {
         private final int userId;
+        private final String line;
         private final String payload;
+        private final RequestTracer.Trace trace;
+
+        // Parsed on the model thread by route()
+        private Command command;
 
-        public Request(int userId, String payload) {
+        public Request(int userId, String line, String payload, RequestTracer.Trace trace) {
             this.userId = userId;
+            this.line = line;
             this.payload = payload;
+            this.trace = trace;
+            command = null;
         }
 
         @Override
-        public Broadcast getBroadcast() {
+        public int route() {
             String sender = model.getNickname(userId);
             if (sender == null) {
-                System.err.println("Nickname for given user ID not found");
+                log.warn("Nickname for user " + userId + " not found");
+                return -1;
+            }
+            // The sender's nickname is resolved here, in queue order, so it
+            // is the one in use when the request arrived
+            command = CommandParser.parse(userId, sender, payload);
+            log.request(userId, line, command instanceof MessageCommand);
+            metrics.commandReceived(command);
+            if (command instanceof InvalidCommand) {
+                log.warn("Invalid command from user " + userId);
+                // Only the sender is answered, so any shard will do
+                return 0;
+            }
+            String channel = command.getChannel();
+            return channel == null ? -1 : model.getShard(channel);
+        }
+
+        @Override
+        public Broadcast getBroadcast() {
+            if (command == null) {
+                // The sender was not found by route()
                 return null;
             }
-            Command command = CommandParser.parse(userId, sender, payload);
             return command.updateServerModel(model);
         }
+
+        @Override
+        public RequestTracer.Trace getTrace() {
+            return trace;
+        }
     }
 }
@@ -0,0 +1,306 @@
+package org.cis120;
+
+import java.io.PrintStream;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A {@code ServerConfig} holds the startup options of a {@link ServerBackend}.
+ *
+ * Options are read from Java system properties whose names start with
+ * {@code pennpals.}, so they can be given on the command line, for instance
+ * {@code mvn exec:java -Dpennpals.io=nio}. Any option that is not set falls
+ * back to a default that reproduces the original behavior of the server.
+ */
+final class ServerConfig {
+
+    /**
+     * The networking engines the {@link ServerBackend} can run on.
+     */
+    enum IoMode {
+        /** One blocking worker thread per connected client. */
+        BLOCKING,
+        /** One blocking worker per connected client, on a virtual thread. */
+        VIRTUAL,
+        /** A small number of {@code java.nio} selector threads. */
+        NIO
+    }
+
+    private static final String PREFIX = "pennpals.";
+
+    private final Properties properties;
+
+    private ServerConfig(Properties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Creates a configuration in which every option has its default value.
+     *
+     * @return the default configuration
+     */
+    static ServerConfig defaults() {
+        return new ServerConfig(new Properties());
+    }
+
+    /**
+     * Creates a configuration from the {@code pennpals.*} system properties of
+     * the running JVM.
+     *
+     * @return the configuration given on the command line
+     */
+    static ServerConfig fromSystemProperties() {
+        Properties properties = new Properties();
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith(PREFIX)) {
+                properties.setProperty(
+                        name.substring(PREFIX.length()), System.getProperty(name)
+                );
+            }
+        }
+        return new ServerConfig(properties);
+    }
+
+    /**
+     * Returns a copy of this configuration with one option replaced.
+     *
+     * @param key   the option name, without the {@code pennpals.} prefix
+     * @param value the new value of the option
+     * @return the updated configuration
+     */
+    ServerConfig with(String key, String value) {
+        Properties copy = new Properties();
+        copy.putAll(properties);
+        copy.setProperty(key, value);
+        return new ServerConfig(copy);
+    }
+
+    // ==========================================================================
+    // Options
+    // ==========================================================================
+
+    /** @return the TCP port clients connect to ({@code pennpals.port}) */
+    int getPort() {
+        return getInt("port", 21212, 0);
+    }
+
+    /** @return the networking engine to use ({@code pennpals.io}) */
+    IoMode getIoMode() {
+        String value = properties.getProperty("io");
+        if (value == null) {
+            return IoMode.BLOCKING;
+        }
+        try {
+            return IoMode.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException iax) {
+            throw new IllegalArgumentException("Unknown I/O mode: " + value);
+        }
+    }
+
+    /**
+     * @return the number of selector threads used by the {@link IoMode#NIO}
+     *         engine ({@code pennpals.io.threads})
+     */
+    int getIoThreads() {
+        return getInt("io.threads", 1, 1);
+    }
+
+    /**
+     * @return the longest request line, in bytes, that the {@link IoMode#NIO}
+     *         engine buffers before disconnecting the client
+     *         ({@code pennpals.io.maxLineBytes})
+     */
+    int getMaxLineBytes() {
+        return getInt("io.maxLineBytes", 65536, 1);
+    }
+
+    /**
+     * Creates the policy applied to clients that fall behind: the most lines
+     * ({@code pennpals.outbound.capacity}) and bytes
+     * ({@code pennpals.outbound.capacityBytes}) queued for one client, and the
+     * action taken beyond them ({@code pennpals.outbound.policy}, one of
+     * {@code disconnect}, {@code drop-oldest} or {@code drop-newest}).
+     *
+     * @return a new policy with the configured values
+     */
+    SlowConsumerPolicy getSlowConsumerPolicy() {
+        String value = properties.getProperty("outbound.policy", "disconnect");
+        SlowConsumerPolicy.Action action;
+        try {
+            action = SlowConsumerPolicy.Action
+                    .valueOf(value.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException iax) {
+            throw new IllegalArgumentException("Unknown slow-consumer policy: " + value);
+        }
+        return new SlowConsumerPolicy(
+                action,
+                getInt("outbound.capacity", 4096, 1),
+                getLong("outbound.capacityBytes", 4L << 20, 1)
+        );
+    }
+
+    /**
+     * @return how long, in microseconds, responses may be held back so that
+     *         more responses to the same clients can be written with them
+     *         ({@code pennpals.flush.windowMicros}); 0 writes after every
+     *         request. Responses are never held back once the server has no
+     *         more requests waiting.
+     */
+    long getFlushWindowMicros() {
+        return getLong("flush.windowMicros", 500, 0);
+    }
+
+    /**
+     * @return the most tasks the model thread takes from its queue and applies
+     *         before dispatching their responses together
+     *         ({@code pennpals.model.batchSize}); 1 dispatches after every task
+     */
+    int getModelBatchSize() {
+        return getInt("model.batchSize", 64, 1);
+    }
+
+    /**
+     * @return the number of shards the model's channels are partitioned into,
+     *         each applying the requests for its channels on its own thread
+     *         ({@code pennpals.model.shards}); 1 applies every request on the
+     *         model thread
+     */
+    int getModelShards() {
+        return getInt("model.shards", 1, 1);
+    }
+
+    /**
+     * @return how often, in milliseconds, the model publishes the snapshot of
+     *         its largest channels read over JMX, if any channel's membership
+     *         has changed since the last one
+     *         ({@code pennpals.model.snapshotMillis})
+     */
+    long getModelSnapshotMillis() {
+        return getLong("model.snapshotMillis", 1000, 1);
+    }
+
+    /**
+     * @return the port on which the server's metrics are served over HTTP on
+     *         the loopback interface ({@code pennpals.metrics.port}); 0, the
+     *         default, serves none
+     */
+    int getMetricsPort() {
+        return getInt("metrics.port", 0, 0);
+    }
+
+    /**
+     * Creates the tracer that follows a sample of requests through the server:
+     * one in how many requests is traced ({@code pennpals.trace.sampleRequests},
+     * 0 for none) and how many completed traces are kept
+     * ({@code pennpals.trace.bufferSize}).
+     *
+     * @return a new tracer with the configured values
+     */
+    RequestTracer createTracer() {
+        return new RequestTracer(
+                getInt("trace.sampleRequests", 0, 0),
+                getInt("trace.bufferSize", 1024, 1)
+        );
+    }
+
+    /**
+     * Creates the queue through which the networking threads hand requests to
+     * the model thread ({@code pennpals.model.queue}): either {@code linked},
+     * an unbounded {@link LinkedBlockingQueue}, or {@code ring}, a
+     * {@link RingBufferQueue} holding at most
+     * {@code pennpals.model.queueCapacity} tasks whose threads wait with the
+     * given {@code pennpals.model.waitStrategy} ({@code spin}, {@code yield}
+     * or {@code park}).
+     *
+     * @param <T> the type of task held in the queue
+     * @return a new, empty queue
+     */
+    <T> BlockingQueue<T> createTaskQueue() {
+        String value = properties.getProperty("model.queue", "linked").trim();
+        if (value.equalsIgnoreCase("linked")) {
+            return new LinkedBlockingQueue<>();
+        } else if (!value.equalsIgnoreCase("ring")) {
+            throw new IllegalArgumentException("Unknown task queue: " + value);
+        }
+        String strategy = properties.getProperty("model.waitStrategy", "park");
+        RingBufferQueue.WaitStrategy waitStrategy;
+        try {
+            waitStrategy = RingBufferQueue.WaitStrategy.valueOf(strategy.trim().toUpperCase());
+        } catch (IllegalArgumentException iax) {
+            throw new IllegalArgumentException("Unknown wait strategy: " + strategy);
+        }
+        return new RingBufferQueue<>(getInt("model.queueCapacity", 65536, 1), waitStrategy);
+    }
+
+    /**
+     * Creates the log of requests, responses and errors: how much is recorded
+     * ({@code pennpals.log.level}, one of {@code off}, {@code error},
+     * {@code warn} or {@code info}), one in how many {@code MESG} lines is
+     * recorded ({@code pennpals.log.sampleMessages}), how many lines may wait
+     * to be written before further lines are dropped
+     * ({@code pennpals.log.bufferSize}), and where they are written
+     * ({@code pennpals.log.sink}, {@code stdout} or {@code stderr}).
+     *
+     * @return a new log with the configured values, already running
+     */
+    ServerLog createLog() {
+        String value = properties.getProperty("log.level", "info");
+        ServerLog.Level level;
+        try {
+            level = ServerLog.Level.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException iax) {
+            throw new IllegalArgumentException("Unknown log level: " + value);
+        }
+        String sink = properties.getProperty("log.sink", "stdout").trim();
+        PrintStream stream;
+        if (sink.equalsIgnoreCase("stdout")) {
+            stream = System.out;
+        } else if (sink.equalsIgnoreCase("stderr")) {
+            stream = System.err;
+        } else {
+            throw new IllegalArgumentException("Unknown log sink: " + sink);
+        }
+        return new ServerLog(
+                ServerLog.streamSink(stream),
+                level,
+                getInt("log.sampleMessages", 1, 1),
+                getInt("log.bufferSize", 65536, 1)
+        );
+    }
+
+    // ==========================================================================
+    // Private utility methods
+    // ==========================================================================
+
+    private int getInt(String key, int defaultValue, int min) {
+        long result = getLong(key, defaultValue, min);
+        if (result > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                    "Option " + PREFIX + key + " must be at most " + Integer.MAX_VALUE
+            );
+        }
+        return (int) result;
+    }
+
+    private long getLong(String key, long defaultValue, long min) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        long result;
+        try {
+            result = Long.parseLong(value.trim());
+        } catch (NumberFormatException nfx) {
+            throw new IllegalArgumentException(
+                    "Option " + PREFIX + key + " is not a number: " + value
+            );
+        }
+        if (result < min) {
+            throw new IllegalArgumentException(
+                    "Option " + PREFIX + key + " must be at least " + min
+            );
+        }
+        return result;
+    }
+}
@@ -0,0 +1,297 @@
+package org.cis120;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@code ServerLog} records the server's traffic and errors without
+ * making the threads that serve clients wait for the console.
+ *
+ * Logging threads only put an unformatted event into a bounded ring buffer;
+ * a single background thread formats the events and writes them to a
+ * {@link Sink}. If the buffer is full the event is dropped and counted
+ * rather than blocking the caller. {@code MESG} traffic, which is most of
+ * the volume on a busy server, can additionally be sampled so that only one
+ * in every N such lines is recorded.
+ *
+ * At {@link Level#OFF}, or whenever a line is filtered out by its level,
+ * logging is a single volatile read. {@link #close()} writes what is left in
+ * the buffer and stops the background thread.
+ */
+final class ServerLog {
+
+    /**
+     * Log levels, from least to most verbose. Each level includes the ones
+     * before it.
+     */
+    enum Level {
+        /** Nothing is logged. */
+        OFF,
+        /** Failures, such as I/O errors on a connection. */
+        ERROR,
+        /** Unusual events, such as clients disconnected for falling behind. */
+        WARN,
+        /** Every request received and every response sent. */
+        INFO
+    }
+
+    /**
+     * The destination of formatted log lines. Sinks are only ever called from
+     * the log's background thread.
+     */
+    interface Sink {
+        /**
+         * Writes one formatted line.
+         *
+         * @param line the line, without a line terminator
+         */
+        void write(String line);
+
+        /**
+         * Called whenever the log has caught up with its buffer.
+         */
+        void flush();
+    }
+
+    private static final int REQUEST = 0;
+    private static final int RESPONSE = 1;
+    private static final int TEXT = 2;
+
+    private final Sink sink;
+    private final BlockingQueue<Event> buffer;
+    private final AtomicLong dropped;
+    private final Thread writer;
+
+    private volatile Level level;
+    private volatile int messageSampling;
+    private volatile boolean closed;
+
+    /**
+     * Creates a log and starts its background thread.
+     *
+     * @param sink            where formatted lines are written
+     * @param level           the most verbose level recorded
+     * @param messageSampling record one in every this many {@code MESG} lines
+     * @param bufferSize      the most events that may wait to be written
+     */
+    ServerLog(Sink sink, Level level, int messageSampling, int bufferSize) {
+        this.sink = sink;
+        buffer = new ArrayBlockingQueue<>(bufferSize);
+        dropped = new AtomicLong();
+        setLevel(level);
+        setMessageSampling(messageSampling);
+        closed = false;
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "Log writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Creates a sink that prints lines to a stream, flushing only when the log
+     * has caught up.
+     *
+     * @param stream the stream to print to
+     * @return the sink
+     */
+    static Sink streamSink(final PrintStream stream) {
+        return new Sink() {
+            @Override
+            public void write(String line) {
+                stream.println(line);
+            }
+
+            @Override
+            public void flush() {
+                stream.flush();
+            }
+        };
+    }
+
+    // ==========================================================================
+    // Settings
+    // ==========================================================================
+
+    Level getLevel() {
+        return level;
+    }
+
+    void setLevel(Level level) {
+        if (level == null) {
+            throw new NullPointerException();
+        }
+        this.level = level;
+    }
+
+    int getMessageSampling() {
+        return messageSampling;
+    }
+
+    /**
+     * @param messageSampling record one in every this many {@code MESG} lines;
+     *                        1 records all of them
+     */
+    void setMessageSampling(int messageSampling) {
+        if (messageSampling < 1) {
+            throw new IllegalArgumentException("Sampling must be at least 1");
+        }
+        this.messageSampling = messageSampling;
+    }
+
+    /** @return the number of events dropped because the buffer was full */
+    long getDropped() {
+        return dropped.get();
+    }
+
+    // ==========================================================================
+    // Logging
+    // ==========================================================================
+
+    /**
+     * Records a request line received from a client, at {@link Level#INFO}.
+     *
+     * @param isMessage whether the line was parsed as a {@code MESG} command
+     */
+    void request(int userId, String line, boolean isMessage) {
+        if (level.compareTo(Level.INFO) >= 0 && sampled(isMessage)) {
+            offer(new Event(REQUEST, userId, line, null));
+        }
+    }
+
+    /**
+     * Records a response written to a client, at {@link Level#INFO}.
+     */
+    void response(int userId, Frame frame) {
+        if (level.compareTo(Level.INFO) >= 0 && sampled(frame.isMessage())) {
+            offer(new Event(RESPONSE, userId, frame.getText(), null));
+        }
+    }
+
+    /**
+     * Records an unusual event at {@link Level#WARN}.
+     */
+    void warn(String message) {
+        if (level.compareTo(Level.WARN) >= 0) {
+            offer(new Event(TEXT, -1, message, null));
+        }
+    }
+
+    /**
+     * Records a failure at {@link Level#ERROR}.
+     *
+     * @param message what was being attempted
+     * @param error   the cause of the failure, or {@code null}
+     */
+    void error(String message, Throwable error) {
+        if (level.compareTo(Level.ERROR) >= 0) {
+            offer(new Event(TEXT, -1, message, error));
+        }
+    }
+
+    /**
+     * Writes every event already logged, then stops the background thread.
+     * Events logged afterwards are dropped. Waits for the thread to finish.
+     */
+    void close() {
+        closed = true;
+        writer.interrupt();
+        try {
+            writer.join();
+        } catch (InterruptedException ix) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ==========================================================================
+    // Background thread
+    // ==========================================================================
+
+    private boolean sampled(boolean isMessage) {
+        int sampling = messageSampling;
+        return !isMessage || sampling == 1
+                || ThreadLocalRandom.current().nextInt(sampling) == 0;
+    }
+
+    private void offer(Event event) {
+        if (closed || !buffer.offer(event)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void drain() {
+        List<Event> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(buffer.take());
+            } catch (InterruptedException ix) {
+                if (closed) {
+                    break;
+                }
+                continue;
+            }
+            buffer.drainTo(batch);
+            write(batch);
+            if (buffer.isEmpty()) {
+                sink.flush();
+            }
+        }
+        buffer.drainTo(batch);
+        write(batch);
+        sink.flush();
+    }
+
+    private void write(List<Event> batch) {
+        for (Event event : batch) {
+            try {
+                sink.write(event.format());
+            } catch (RuntimeException rx) {
+                rx.printStackTrace();
+            }
+        }
+        batch.clear();
+    }
+
+    /**
+     * An event waiting to be formatted by the background thread.
+     */
+    private static final class Event {
+        private final int kind;
+        private final int userId;
+        private final String text;
+        private final Throwable error;
+
+        Event(int kind, int userId, String text, Throwable error) {
+            this.kind = kind;
+            this.userId = userId;
+            this.text = text;
+            this.error = error;
+        }
+
+        String format() {
+            switch (kind) {
+                case REQUEST:
+                    return String.format("Request received from user %d: \"%s\"", userId, text);
+                case RESPONSE:
+                    return String.format("Response sent to user %d: \"%s\"", userId, text);
+                default:
+                    if (error == null) {
+                        return text;
+                    }
+                    StringWriter trace = new StringWriter();
+                    error.printStackTrace(new PrintWriter(trace));
+                    return text + ": " + trace.toString().trim();
+            }
+        }
+    }
+}
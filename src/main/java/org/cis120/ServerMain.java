@@ -9,9 +9,11 @@ import java.awt.event.ActionListener;
  * Initializes and starts a {@link ServerBackend}, a {@link ServerModel},
  * and a very basic UI to indicate that the server is running. When that
  * UI is closed, using the standard operating system "X" control, the
- * server is shut down.
+ * server is shut down. The running server can be watched and tuned over
+ * JMX; see {@link ServerManagementMBean}.
  *
- * You do not need to modify this file.
+ * Server options are read from {@code pennpals.*} system properties; see
+ * {@link ServerConfig}.
  */
 
 public final class ServerMain {
@@ -21,8 +23,8 @@ public final class ServerMain {
         JLabel message = new JLabel(
                 "<html>Hello, my name is Grace.<br />" +
                         "I will be your server for the evening. <br /><br />" +
-                        "(This window lets you know that the server is running, " +
-                        "but does not do anything else.)</html>"
+                        "(This window lets you know that the server is running. " +
+                        "Connect jconsole to it to watch and tune the server.)</html>"
         );
         message.setHorizontalAlignment(SwingConstants.CENTER);
         frame.add(message);
@@ -30,8 +32,9 @@ public final class ServerMain {
         frame.pack();
         frame.setSize(new Dimension(250, 150));
 
-        final ServerModel state = new ServerModel();
-        final ServerBackend server = new ServerBackend(state);
+        final ServerConfig config = ServerConfig.fromSystemProperties();
+        final ServerModel state = new ServerModel(config.getModelShards());
+        final ServerBackend server = new ServerBackend(state, config);
         final Timer timer = new Timer(100, null);
 
         timer.addActionListener(new ActionListener() {
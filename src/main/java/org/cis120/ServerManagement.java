@@ -0,0 +1,146 @@
+package org.cis120;
+
+import java.util.Map;
+
+/**
+ * The {@code ServerManagement} bean exposes a {@link ServerBackend} over JMX.
+ *
+ * JMX calls arrive on threads of their own. Every value read here is one the
+ * model publishes as it changes, or comes from a concurrent collection or a
+ * volatile setting, so watching the server never waits for, or holds up, the
+ * model thread. Finding the largest channels means looking at every
+ * channel, so the model thread does that periodically
+ * ({@link ServerConfig#getModelSnapshotMillis()}) and a read returns the
+ * last snapshot. Every setting changed here takes effect immediately, and
+ * a value the setting would reject is reported with an
+ * {@link IllegalArgumentException}.
+ */
+final class ServerManagement implements ServerManagementMBean {
+
+    private final ServerBackend backend;
+    private final ServerModel model;
+
+    ServerManagement(ServerBackend backend, ServerModel model) {
+        this.backend = backend;
+        this.model = model;
+    }
+
+    // ==========================================================================
+    // Live state
+    // ==========================================================================
+
+    @Override
+    public int getUserCount() {
+        return model.getUserCount();
+    }
+
+    @Override
+    public int getChannelCount() {
+        return model.getChannelCount();
+    }
+
+    @Override
+    public String[] getLargestChannels() {
+        Map<String, Integer> largest = model.getLargestChannels();
+        String[] channels = new String[largest.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : largest.entrySet()) {
+            channels[i++] = entry.getKey() + ": " + entry.getValue();
+        }
+        return channels;
+    }
+
+    @Override
+    public int getConnectionCount() {
+        return backend.getConnectionCount();
+    }
+
+    @Override
+    public int getTaskQueueDepth() {
+        return backend.getTaskQueueDepth();
+    }
+
+    // ==========================================================================
+    // Settings
+    // ==========================================================================
+
+    @Override
+    public int getLogMessageSampling() {
+        return backend.getLog().getMessageSampling();
+    }
+
+    @Override
+    public void setLogMessageSampling(int sampling) {
+        backend.getLog().setMessageSampling(sampling);
+    }
+
+    @Override
+    public int getBatchSize() {
+        return backend.getBatchSize();
+    }
+
+    @Override
+    public void setBatchSize(int batchSize) {
+        backend.setBatchSize(batchSize);
+    }
+
+    @Override
+    public String getSlowConsumerAction() {
+        return backend.getSlowConsumerPolicy().getAction().name();
+    }
+
+    @Override
+    public void setSlowConsumerAction(String action) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        SlowConsumerPolicy.Action parsed;
+        try {
+            // Accepts the spelling of pennpals.outbound.policy as well
+            parsed = SlowConsumerPolicy.Action
+                    .valueOf(action.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException iax) {
+            throw new IllegalArgumentException("Unknown slow-consumer policy: " + action);
+        }
+        backend.getSlowConsumerPolicy().setAction(parsed);
+    }
+
+    @Override
+    public int getSlowConsumerMaxLines() {
+        return backend.getSlowConsumerPolicy().getMaxLines();
+    }
+
+    @Override
+    public void setSlowConsumerMaxLines(int maxLines) {
+        backend.getSlowConsumerPolicy().setMaxLines(maxLines);
+    }
+
+    @Override
+    public long getSlowConsumerMaxBytes() {
+        return backend.getSlowConsumerPolicy().getMaxBytes();
+    }
+
+    @Override
+    public void setSlowConsumerMaxBytes(long maxBytes) {
+        backend.getSlowConsumerPolicy().setMaxBytes(maxBytes);
+    }
+
+    @Override
+    public int getTraceSampling() {
+        return backend.getTracer().getSampling();
+    }
+
+    @Override
+    public void setTraceSampling(int sampling) {
+        backend.getTracer().setSampling(sampling);
+    }
+
+    // ==========================================================================
+    // Operations
+    // ==========================================================================
+
+    @Override
+    public String dumpTraces() {
+        return backend.getTracer().dump();
+    }
+}
@@ -0,0 +1,78 @@
+package org.cis120;
+
+/**
+ * The management interface of a running {@link ServerBackend}, registered
+ * with the platform MBean server as
+ * {@code org.cis120:type=ServerBackend,port=<port>} so that tools such as
+ * jconsole can watch the server and tune it while it runs. It must be public
+ * for JMX to introspect it; see {@link ServerManagement} for the
+ * implementation.
+ */
+public interface ServerManagementMBean {
+
+    // ==========================================================================
+    // Live state
+    // ==========================================================================
+
+    /** @return the number of registered users */
+    int getUserCount();
+
+    /** @return the number of channels */
+    int getChannelCount();
+
+    /**
+     * @return the largest channels, largest first, each as
+     *         {@code <name>: <users>}, as of the model's last snapshot
+     */
+    String[] getLargestChannels();
+
+    /** @return the number of open connections */
+    int getConnectionCount();
+
+    /** @return the number of tasks waiting for the model thread */
+    int getTaskQueueDepth();
+
+    // ==========================================================================
+    // Settings
+    // ==========================================================================
+
+    /** @return log one in every this many {@code MESG} requests and responses */
+    int getLogMessageSampling();
+
+    void setLogMessageSampling(int sampling);
+
+    /** @return the most tasks the model applies before dispatching their responses */
+    int getBatchSize();
+
+    void setBatchSize(int batchSize);
+
+    /**
+     * @return what happens to a client over a slow-consumer threshold:
+     *         {@code DROP_OLDEST}, {@code DROP_NEWEST} or {@code DISCONNECT}
+     */
+    String getSlowConsumerAction();
+
+    void setSlowConsumerAction(String action);
+
+    /** @return the most lines that may be queued for one client */
+    int getSlowConsumerMaxLines();
+
+    void setSlowConsumerMaxLines(int maxLines);
+
+    /** @return the most bytes that may be queued for one client */
+    long getSlowConsumerMaxBytes();
+
+    void setSlowConsumerMaxBytes(long maxBytes);
+
+    /** @return trace one in every this many requests, or none if 0 */
+    int getTraceSampling();
+
+    void setTraceSampling(int sampling);
+
+    // ==========================================================================
+    // Operations
+    // ==========================================================================
+
+    /** @return the completed request traces, oldest first, one per line */
+    String dumpTraces();
+}
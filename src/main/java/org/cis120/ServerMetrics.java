@@ -0,0 +1,281 @@
+package org.cis120;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code ServerMetrics} count what a {@link ServerBackend} does: the
+ * commands it receives by type, the errors it answers with by
+ * {@link ServerResponse}, connections, bytes read and written, and how long
+ * the model takes to apply requests and dispatch their responses.
+ *
+ * Every count is a {@link LongAdder}, which spreads concurrent updates over
+ * separate cells, so the networking threads, the model thread and the shard
+ * threads never contend on a shared counter; only reading a count adds the
+ * cells up. The counts are written out in the Prometheus text exposition
+ * format by {@link #writeTo}, for the {@link MetricsEndpoint}.
+ */
+final class ServerMetrics {
+
+    private static final String[] COMMANDS = {
+        "CREATE", "INVITE", "JOIN", "KICK", "LEAVE", "MESG", "NICK", "invalid"
+    };
+    private static final int CREATE = 0;
+    private static final int INVITE = 1;
+    private static final int JOIN = 2;
+    private static final int KICK = 3;
+    private static final int LEAVE = 4;
+    private static final int MESG = 5;
+    private static final int NICK = 6;
+    private static final int INVALID = 7;
+
+    // Upper bounds of the latency buckets, in nanoseconds, from 1 µs to 1 s
+    private static final long[] LATENCY_BOUNDS = {
+        1000L, 2500L, 5000L, 10000L, 25000L, 50000L, 100000L, 250000L, 500000L,
+        1000000L, 2500000L, 5000000L, 10000000L, 25000000L, 50000000L, 100000000L,
+        250000000L, 500000000L, 1000000000L
+    };
+
+    private final LongAdder[] commands;
+    private final LongAdder[] errors;
+    private final LongAdder connectionsOpened;
+    private final LongAdder connectionsClosed;
+    private final LongAdder bytesRead;
+    private final LongAdder bytesWritten;
+    private final Histogram applyTime;
+    private final Histogram dispatchTime;
+
+    ServerMetrics() {
+        commands = newCounters(COMMANDS.length);
+        errors = newCounters(ServerResponse.values().length);
+        connectionsOpened = new LongAdder();
+        connectionsClosed = new LongAdder();
+        bytesRead = new LongAdder();
+        bytesWritten = new LongAdder();
+        applyTime = new Histogram(LATENCY_BOUNDS);
+        dispatchTime = new Histogram(LATENCY_BOUNDS);
+    }
+
+    // ==========================================================================
+    // Recording
+    // ==========================================================================
+
+    /**
+     * Counts a request by the type of its command.
+     *
+     * @param command the parsed command, an {@link InvalidCommand} if the
+     *                request was not one
+     */
+    void commandReceived(Command command) {
+        commands[indexOf(command)].increment();
+    }
+
+    /**
+     * Counts the error a command was answered with, if any.
+     *
+     * @param broadcast the responses to a command
+     */
+    void responded(Broadcast broadcast) {
+        ServerResponse error = broadcast.getError();
+        if (error != null) {
+            errors[error.ordinal()].increment();
+        }
+    }
+
+    void connectionOpened() {
+        connectionsOpened.increment();
+    }
+
+    void connectionClosed() {
+        connectionsClosed.increment();
+    }
+
+    void bytesRead(long count) {
+        bytesRead.add(count);
+    }
+
+    void bytesWritten(long count) {
+        bytesWritten.add(count);
+    }
+
+    /**
+     * Records how long the model took to apply one task.
+     */
+    void applied(long nanos) {
+        applyTime.record(nanos);
+    }
+
+    /**
+     * Records how long a dispatcher took to turn one batch of broadcasts into
+     * lines queued on their recipients' connections.
+     */
+    void dispatched(long nanos) {
+        dispatchTime.record(nanos);
+    }
+
+    // ==========================================================================
+    // Reading
+    // ==========================================================================
+
+    /**
+     * @param command a command name such as {@code MESG}, or {@code invalid}
+     * @return the number of requests of that type received so far
+     */
+    long getCommandCount(String command) {
+        for (int i = 0; i < COMMANDS.length; i++) {
+            if (COMMANDS[i].equals(command)) {
+                return commands[i].sum();
+            }
+        }
+        throw new IllegalArgumentException("Unknown command: " + command);
+    }
+
+    /** @return the number of commands answered with the given error so far */
+    long getErrorCount(ServerResponse error) {
+        return errors[error.ordinal()].sum();
+    }
+
+    /**
+     * Writes every count, in the Prometheus text exposition format.
+     *
+     * @param out the text to append to
+     */
+    void writeTo(StringBuilder out) {
+        header(out, "pennpals_commands_total", "Requests received, by command", "counter");
+        for (int i = 0; i < COMMANDS.length; i++) {
+            out.append("pennpals_commands_total{command=\"").append(COMMANDS[i]).append("\"} ")
+                    .append(commands[i].sum()).append('\n');
+        }
+        header(out, "pennpals_errors_total", "Commands answered with an error", "counter");
+        for (ServerResponse response : ServerResponse.values()) {
+            if (response == ServerResponse.OKAY) {
+                continue;
+            }
+            out.append("pennpals_errors_total{response=\"").append(response.name())
+                    .append("\",code=\"").append(response.getCode()).append("\"} ")
+                    .append(errors[response.ordinal()].sum()).append('\n');
+        }
+        writeCounter(out, "pennpals_connections_opened_total", "Connections accepted",
+                connectionsOpened.sum());
+        writeCounter(out, "pennpals_connections_closed_total", "Connections closed",
+                connectionsClosed.sum());
+        writeCounter(out, "pennpals_bytes_read_total", "Bytes read from clients",
+                bytesRead.sum());
+        writeCounter(out, "pennpals_bytes_written_total", "Bytes written to clients",
+                bytesWritten.sum());
+        applyTime.writeTo(out, "pennpals_model_apply_seconds",
+                "Time the model took to apply one task");
+        dispatchTime.writeTo(out, "pennpals_dispatch_seconds",
+                "Time taken to queue one batch of responses on their connections");
+    }
+
+    /**
+     * Writes a value that can go up and down, in the Prometheus text
+     * exposition format.
+     */
+    static void writeGauge(StringBuilder out, String name, String help, long value) {
+        header(out, name, help, "gauge");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    // ==========================================================================
+    // Histogram
+    // ==========================================================================
+
+    /**
+     * Counts durations in buckets with fixed upper bounds, with the total of
+     * every duration recorded, as a Prometheus histogram does.
+     */
+    static final class Histogram {
+        private final long[] bounds;
+        private final String[] labels;
+        // One more bucket than bounds, for durations above the last bound
+        private final LongAdder[] buckets;
+        private final LongAdder sum;
+
+        Histogram(long[] bounds) {
+            this.bounds = bounds.clone();
+            labels = new String[bounds.length];
+            for (int i = 0; i < bounds.length; i++) {
+                labels[i] = BigDecimal.valueOf(bounds[i], 9).stripTrailingZeros().toPlainString();
+            }
+            buckets = newCounters(bounds.length + 1);
+            sum = new LongAdder();
+        }
+
+        void record(long nanos) {
+            int bucket = 0;
+            while (bucket < bounds.length && nanos > bounds[bucket]) {
+                bucket++;
+            }
+            buckets[bucket].increment();
+            sum.add(nanos);
+        }
+
+        /** @return the number of durations recorded */
+        long getCount() {
+            long count = 0;
+            for (LongAdder bucket : buckets) {
+                count += bucket.sum();
+            }
+            return count;
+        }
+
+        void writeTo(StringBuilder out, String name, String help) {
+            header(out, name, help, "histogram");
+            long cumulative = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                cumulative += buckets[i].sum();
+                out.append(name).append("_bucket{le=\"")
+                        .append(i < labels.length ? labels[i] : "+Inf").append("\"} ")
+                        .append(cumulative).append('\n');
+            }
+            out.append(name).append("_sum ")
+                    .append(sum.sum() / (double) TimeUnit.SECONDS.toNanos(1)).append('\n');
+            out.append(name).append("_count ").append(cumulative).append('\n');
+        }
+    }
+
+    // ==========================================================================
+    // Private utility methods
+    // ==========================================================================
+
+    // MESG is by far the most common, so it is checked first
+    private static int indexOf(Command command) {
+        if (command instanceof MessageCommand) {
+            return MESG;
+        } else if (command instanceof CreateCommand) {
+            return CREATE;
+        } else if (command instanceof InviteCommand) {
+            return INVITE;
+        } else if (command instanceof JoinCommand) {
+            return JOIN;
+        } else if (command instanceof KickCommand) {
+            return KICK;
+        } else if (command instanceof LeaveCommand) {
+            return LEAVE;
+        } else if (command instanceof NicknameCommand) {
+            return NICK;
+        }
+        return INVALID;
+    }
+
+    private static LongAdder[] newCounters(int count) {
+        LongAdder[] counters = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            counters[i] = new LongAdder();
+        }
+        return counters;
+    }
+
+    private static void writeCounter(StringBuilder out, String name, String help, long value) {
+        header(out, name, help, "counter");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+}
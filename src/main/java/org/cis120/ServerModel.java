@@ -15,19 +15,175 @@ import java.util.*;
  * 1. handle commands from clients, and
  * 2. handle commands from {@link ServerBackend} to coordinate
  * client connection/disconnection.
+ *
+ * Channels are partitioned by name into one or more shards. The model is not
+ * thread-safe, but methods that touch a single channel ({@link #getShard}
+ * names which) only ever read or change that channel's shard and read the
+ * registered users, so they may run concurrently with one another for
+ * channels in different shards. Every other method needs the whole model to
+ * itself.
  */
 public final class ServerModel {
 
-    private Map<String, Channel> channels;
+    private final List<Shard> shards;
     private Map<Integer, String> registeredUsers;
+    // The inverse of registeredUsers, so that looking up a user by nickname
+    // does not scan every user
+    private Map<String, Integer> userIds;
+    private final NicknameAllocator nicknames;
+    // The number of registered users, published for threads other than the
+    // one changing the model
+    private volatile int userCount;
+    // The largest channels and their sizes, largest first, as last published
+    // by publishLargestChannels for any thread to read
+    private volatile Map<String, Integer> largestChannels;
+    // The sum of the shards' versions when largestChannels was published
+    private volatile long largestChannelsVersion;
 
     /**
      * Constructs a {@code ServerModel}. Make sure to initialize any collections
      * used to model the server state here.
      */
     public ServerModel() {
-        channels = new TreeMap<>();
+        this(1);
+    }
+
+    /**
+     * Constructs a {@code ServerModel} whose channels are partitioned into the
+     * given number of shards.
+     *
+     * @param shardCount The number of shards, at least 1
+     */
+    ServerModel(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Invalid shard count: " + shardCount);
+        }
+        shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new Shard());
+        }
         registeredUsers = new TreeMap<>();
+        userIds = new HashMap<>();
+        nicknames = new NicknameAllocator();
+        userCount = 0;
+        largestChannels = Collections.emptyMap();
+        largestChannelsVersion = 0;
+    }
+
+    /**
+     * @return The number of shards the channels are partitioned into
+     */
+    int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * Gets the shard holding the channel with the given name, whether or not
+     * such a channel exists.
+     *
+     * @param channelName The channel name
+     * @return The shard index, from 0 to {@link #getShardCount()} - 1
+     */
+    int getShard(String channelName) {
+        return Math.floorMod(channelName.hashCode(), shards.size());
+    }
+
+    /**
+     * Gets the number of registered users. Unlike the rest of the model, this
+     * may be called from any thread, and sees every registration and
+     * deregistration completed so far.
+     *
+     * @return The number of registered users
+     */
+    int getUserCount() {
+        return userCount;
+    }
+
+    /**
+     * Gets the number of channels. Like {@link #getUserCount()}, this may be
+     * called from any thread.
+     *
+     * @return The number of channels in every shard
+     */
+    int getChannelCount() {
+        int count = 0;
+        for (Shard shard : shards) {
+            count += shard.channelCount;
+        }
+        return count;
+    }
+
+    /**
+     * Publishes the largest channels, for {@link #getLargestChannels()}. This
+     * looks at every channel, so it needs the whole model to itself.
+     *
+     * @param count The most channels to publish
+     */
+    void publishLargestChannels(int count) {
+        long version = membershipVersion();
+        Comparator<Map.Entry<String, Integer>> bySize =
+                new Comparator<Map.Entry<String, Integer>>() {
+                    @Override
+                    public int compare(Map.Entry<String, Integer> a, Map.Entry<String, Integer> b) {
+                        return Integer.compare(a.getValue(), b.getValue());
+                    }
+                };
+        // The smallest of the largest channels found so far is at the head
+        PriorityQueue<Map.Entry<String, Integer>> largest = new PriorityQueue<>(count + 1, bySize);
+        for (Shard shard : shards) {
+            for (Map.Entry<String, Channel> entry : shard.channels.entrySet()) {
+                largest.add(new AbstractMap.SimpleImmutableEntry<>(
+                        entry.getKey(), entry.getValue().getUserCount()
+                ));
+                if (largest.size() > count) {
+                    largest.poll();
+                }
+            }
+        }
+        List<Map.Entry<String, Integer>> sorted = new ArrayList<>(largest);
+        Collections.sort(sorted, Collections.reverseOrder(bySize));
+        Map<String, Integer> published = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : sorted) {
+            published.put(entry.getKey(), entry.getValue());
+        }
+        largestChannels = Collections.unmodifiableMap(published);
+        largestChannelsVersion = version;
+    }
+
+    /**
+     * Tells whether any channel has been created or removed, or gained or
+     * lost a user, since the largest channels were last published. Like
+     * {@link #getUserCount()}, this may be called from any thread.
+     *
+     * @return true if {@link #publishLargestChannels(int)} would publish
+     *         something new
+     */
+    boolean isLargestChannelsStale() {
+        return membershipVersion() != largestChannelsVersion;
+    }
+
+    private long membershipVersion() {
+        long version = 0;
+        for (Shard shard : shards) {
+            version += shard.version;
+        }
+        return version;
+    }
+
+    /**
+     * Gets the largest channels as of the last call to
+     * {@link #publishLargestChannels(int)}. Like {@link #getUserCount()}, this
+     * may be called from any thread.
+     *
+     * @return The names of the largest channels, largest first, mapped to
+     *         their number of users; must not be modified
+     */
+    Map<String, Integer> getLargestChannels() {
+        return largestChannels;
+    }
+
+    private Shard shardFor(String channelName) {
+        return shards.get(getShard(channelName));
     }
 
     // =========================================================================
@@ -46,12 +202,11 @@ public final class ServerModel {
      *         such a user exists, otherwise -1
      */
     public int getUserId(String nickname) {
-        for (Map.Entry<Integer, String> tempNick : registeredUsers.entrySet()) {
-            if (nickname.equals(tempNick.getValue())) {
-                return tempNick.getKey();
-            }
+        Integer userId = userIds.get(nickname);
+        if (userId == null) {
+            return -1;
         }
-        return -1;
+        return userId;
     }
 
     /**
@@ -95,7 +250,10 @@ public final class ServerModel {
      * @return The collection of channel names
      */
     public Collection<String> getChannels() {
-        Collection<String> tempCollection = new TreeSet<>(channels.keySet());
+        Collection<String> tempCollection = new TreeSet<>();
+        for (Shard shard : shards) {
+            tempCollection.addAll(shard.channels.keySet());
+        }
         return tempCollection;
     }
 
@@ -111,9 +269,13 @@ public final class ServerModel {
      * @return A collection of all user nicknames in the channel
      */
     public Collection<String> getUsersInChannel(String channelName) {
+        Channel channel = shardFor(channelName).channels.get(channelName);
+        if (channel == null) {
+            return new TreeSet<>();
+        }
         Collection<String> tempUserList = new TreeSet<>();
-        if (channels.containsKey(channelName)) {
-            tempUserList.addAll(channels.get(channelName).getUserList());
+        for (int userId : channel.getUserIds()) {
+            tempUserList.add(registeredUsers.get(userId));
         }
         return tempUserList;
     }
@@ -129,10 +291,11 @@ public final class ServerModel {
      *         exists; otherwise, return null
      */
     public String getOwner(String channelName) {
-        if (!channels.containsKey(channelName)) {
+        Channel channel = shardFor(channelName).channels.get(channelName);
+        if (channel == null) {
             return null;
         }
-        return channels.get(channelName).getOwner();
+        return registeredUsers.get(channel.getOwnerId());
     }
 
     // ===============================================
@@ -155,10 +318,12 @@ public final class ServerModel {
     public Broadcast registerUser(int userId) {
         String nickname = generateUniqueNickname();
         registeredUsers.put(userId, nickname);
+        userIds.put(nickname, userId);
+        userCount = registeredUsers.size();
         // We have taken care of generating the nickname and returning
         // the Broadcast for you. You need to modify this method to
         // store the new user's ID and username in this model's internal state.
-        return Broadcast.connected(nickname);
+        return Broadcast.connected(userId, nickname, this);
     }
 
     /**
@@ -166,17 +331,12 @@ public final class ServerModel {
      *
      * Generates a unique nickname of the form "UserX", where X is the
      * smallest non-negative integer that yields a unique nickname for a user.
+     * The {@link NicknameAllocator} finds it without scanning every user.
      *
      * @return The generated nickname
      */
     private String generateUniqueNickname() {
-        int suffix = 0;
-        String nickname;
-        Collection<String> existingUsers = getRegisteredUsers();
-        do {
-            nickname = "User" + suffix++;
-        } while (existingUsers.contains(nickname));
-        return nickname;
+        return nicknames.allocate();
     }
 
     /**
@@ -198,24 +358,32 @@ public final class ServerModel {
      *         parameters
      */
     public Broadcast deregisterUser(int userId) {
-        TreeMap<String, Channel> tempChannels = new TreeMap<>();
-        tempChannels.putAll(channels);
-
         String tempDeregisterNN = registeredUsers.get(userId);
-        Collection<String> userNotifyList = new TreeSet<String>();
-        for (Map.Entry<String, Channel> tempChannel : tempChannels.entrySet()) {
-            Channel channelValue = tempChannel.getValue();
-            if (channelValue.getUserList().contains(tempDeregisterNN)) {
-                channelValue.banUser(tempDeregisterNN);
-                userNotifyList.addAll(channelValue.getUserList());
-                if (tempDeregisterNN.equals(channelValue.getOwner())) {
-                    channels.remove(tempChannel.getKey());
+        UserIdSet userNotifyList = new UserIdSet();
+        for (Shard shard : shards) {
+            // Only the channels the user is in, copied since they change below
+            for (String channelName : new ArrayList<>(shard.channelsOf(userId))) {
+                Channel channelValue = shard.channels.get(channelName);
+                shard.removeMember(channelName, channelValue, userId, tempDeregisterNN);
+                for (int memberId : channelValue.getUserIds()) {
+                    userNotifyList.add(memberId);
+                }
+                if (channelValue.getOwnerId() == userId) {
+                    shard.removeChannel(channelName);
                 }
             }
         }
+        // Resolve the recipients while the disconnected user's nickname is
+        // still registered, so the broadcast can show it
+        int[] recipients = userNotifyList.toArray();
+        Arrays.sort(recipients);
+        Broadcast broadcast = Broadcast.disconnected(tempDeregisterNN, recipients, this);
         registeredUsers.remove(userId, tempDeregisterNN);
+        userIds.remove(tempDeregisterNN);
+        userCount = registeredUsers.size();
+        nicknames.release(tempDeregisterNN);
 
-        return Broadcast.disconnected(tempDeregisterNN, userNotifyList);
+        return broadcast;
     }
 
     /**
@@ -245,27 +413,33 @@ public final class ServerModel {
         if (!ServerModel.isValidName(senderNN)) {
             return Broadcast.error(nickCommand, ServerResponse.INVALID_NAME);
         }
-        for (Map.Entry<Integer, String> tempRUser : registeredUsers.entrySet()) {
-            if (tempRUser.getValue().equals(senderNN)) {
-                return Broadcast.error(nickCommand, ServerResponse.NAME_ALREADY_IN_USE);
-            }
+        if (userIds.containsKey(senderNN)) {
+            return Broadcast.error(nickCommand, ServerResponse.NAME_ALREADY_IN_USE);
         }
 
-        Collection<String> tempUserShared = new TreeSet<>();
+        // Channels hold user IDs, so apart from their NAMES payloads
+        // renaming the user is all it takes
+        if (registeredUsers.replace(senderID, senderOldNN, senderNN)) {
+            userIds.remove(senderOldNN);
+            userIds.put(senderNN, senderID);
+            nicknames.release(senderOldNN);
+            nicknames.claim(senderNN);
+        }
 
-        for (Map.Entry<String, Channel> tempChannel : channels.entrySet()) {
-            if (tempChannel.getValue().getUserList().contains(senderOldNN)) {
-                Collection<String> tempChannelUserList = tempChannel.getValue().getUserList();
-                if (tempChannel.getValue().getOwner().equals(senderOldNN)) {
-                    tempChannel.getValue().setOwner(senderNN);
+        UserIdSet tempUserShared = new UserIdSet();
+        tempUserShared.add(senderID);
+        for (Shard shard : shards) {
+            for (String channelName : shard.channelsOf(senderID)) {
+                Channel channelValue = shard.channels.get(channelName);
+                channelValue.renameUser(senderOldNN, senderNN);
+                for (int memberId : channelValue.getUserIds()) {
+                    tempUserShared.add(memberId);
                 }
-                tempChannelUserList.remove(senderOldNN);
-                tempChannelUserList.add(senderNN);
-                tempUserShared.addAll(tempChannelUserList);
             }
         }
-        registeredUsers.replace(senderID, senderOldNN, senderNN);
-        return Broadcast.okay(nickCommand, tempUserShared);
+        int[] recipients = tempUserShared.toArray();
+        Arrays.sort(recipients);
+        return Broadcast.okay(nickCommand, recipients, this);
     }
 
     /**
@@ -313,28 +487,24 @@ public final class ServerModel {
      *         already a channel with the proposed name
      */
     public Broadcast createChannel(CreateCommand createCommand) {
-        String senderName = createCommand.getSender();
+        int senderId = createCommand.getSenderId();
         String senderChannelName = createCommand.getChannel();
+        Shard shard = shardFor(senderChannelName);
         if (!ServerModel.isValidName(senderChannelName)) {
             return Broadcast.error(createCommand, ServerResponse.INVALID_NAME);
         }
-        for (Map.Entry<String, Channel> tempChannel : channels.entrySet()) {
-            if (tempChannel.getKey().equals(senderChannelName)) {
-                return Broadcast.error(createCommand, ServerResponse.CHANNEL_ALREADY_EXISTS);
-            }
+        if (shard.channels.containsKey(senderChannelName)) {
+            return Broadcast.error(createCommand, ServerResponse.CHANNEL_ALREADY_EXISTS);
         }
         Channel c;
         if (createCommand.isInviteOnly()) {
-            c = new Channel(senderName, true);
+            c = new Channel(senderId, createCommand.getSender(), true);
         } else {
-            c = new Channel(senderName, false);
+            c = new Channel(senderId, createCommand.getSender(), false);
         }
-        channels.put(senderChannelName, c);
+        shard.addChannel(senderChannelName, c);
 
-        Collection<String> tempChannelCollection = new TreeSet<>();
-        tempChannelCollection.add(senderName);
-
-        return Broadcast.okay(createCommand, tempChannelCollection);
+        return Broadcast.okay(createCommand, new int[] { senderId }, this);
     }
 
     /**
@@ -357,8 +527,9 @@ public final class ServerModel {
      *         the sender is attempting to join a private channel
      */
     public Broadcast joinChannel(JoinCommand joinCommand) {
-        String senderNN = joinCommand.getSender();
         String senderChannelName = joinCommand.getChannel();
+        Shard shard = shardFor(senderChannelName);
+        Map<String, Channel> channels = shard.channels;
         Channel channelValue = channels.get(senderChannelName);
         if (!channels.containsKey(senderChannelName)) {
             return Broadcast.error(joinCommand, ServerResponse.NO_SUCH_CHANNEL);
@@ -367,10 +538,13 @@ public final class ServerModel {
             return Broadcast.error(joinCommand, ServerResponse.JOIN_PRIVATE_CHANNEL);
         }
 
-        channelValue.addUser(senderNN);
-        Collection<String> tempUserList = new TreeSet<>();
-        tempUserList.addAll(channels.get(senderChannelName).getUserList());
-        return Broadcast.names(joinCommand, tempUserList, channelValue.getOwner());
+        shard.addMember(
+                senderChannelName, channelValue, joinCommand.getSenderId(), joinCommand.getSender()
+        );
+        return Broadcast.names(
+                joinCommand, channelValue.getUserIds(), joinCommand.getSenderId(),
+                channelValue.getNamesPayload(), this
+        );
     }
 
     /**
@@ -391,18 +565,16 @@ public final class ServerModel {
      *         not in the channel they are trying to send the message to
      */
     public Broadcast sendMessage(MessageCommand messageCommand) {
-        String senderNN = messageCommand.getSender();
         String senderChannelName = messageCommand.getChannel();
-        if (!channels.containsKey(senderChannelName)) {
+        Channel channelValue = shardFor(senderChannelName).channels.get(senderChannelName);
+        if (channelValue == null) {
             return Broadcast.error(messageCommand, ServerResponse.NO_SUCH_CHANNEL);
         }
-        if (!channels.get(senderChannelName).getUserList().contains(senderNN)) {
+        if (!channelValue.hasUser(messageCommand.getSenderId())) {
             return Broadcast.error(messageCommand, ServerResponse.USER_NOT_IN_CHANNEL);
         }
 
-        Collection<String> tempUserList = new TreeSet<>();
-        tempUserList.addAll(channels.get(senderChannelName).getUserList());
-        return Broadcast.okay(messageCommand, tempUserList);
+        return Broadcast.okay(messageCommand, channelValue.getUserIds(), this);
     }
 
     /**
@@ -423,24 +595,27 @@ public final class ServerModel {
      *         not in the channel they are trying to leave
      */
     public Broadcast leaveChannel(LeaveCommand leaveCommand) {
-        String senderNN = leaveCommand.getSender();
+        int senderId = leaveCommand.getSenderId();
         String senderChannelName = leaveCommand.getChannel();
+        Shard shard = shardFor(senderChannelName);
+        Map<String, Channel> channels = shard.channels;
         Channel channelValue = channels.get(senderChannelName);
         if (!channels.containsKey(senderChannelName)) {
             return Broadcast.error(leaveCommand, ServerResponse.NO_SUCH_CHANNEL);
         }
-        if (!channelValue.getUserList().contains(senderNN)) {
+        if (!channelValue.hasUser(senderId)) {
             return Broadcast.error(leaveCommand, ServerResponse.USER_NOT_IN_CHANNEL);
         }
 
-        Collection<String> tempUserList = new TreeSet<>();
-        tempUserList.addAll(channelValue.getUserList());
-        if (channelValue.getOwner().equals(senderNN)) {
-            channels.remove(senderChannelName, channelValue);
+        int[] tempUserList = channelValue.getUserIds();
+        if (channelValue.getOwnerId() == senderId) {
+            shard.removeChannel(senderChannelName);
         } else {
-            channelValue.banUser(senderNN);
+            shard.removeMember(
+                    senderChannelName, channelValue, senderId, leaveCommand.getSender()
+            );
         }
-        return Broadcast.okay(leaveCommand, tempUserList);
+        return Broadcast.okay(leaveCommand, tempUserList, this);
     }
 
     // =============================
@@ -475,10 +650,14 @@ public final class ServerModel {
     public Broadcast inviteUser(InviteCommand inviteCommand) {
         String senderNN = inviteCommand.getSender();
         String channelName = inviteCommand.getChannel();
+        Shard shard = shardFor(channelName);
+        Map<String, Channel> channels = shard.channels;
         Channel channelValue = channels.get(channelName);
         String invitedUserNN = inviteCommand.getUserToInvite();
 
-        if (!registeredUsers.containsValue(invitedUserNN)) {
+        Integer invitedUserId = userIds.get(invitedUserNN);
+
+        if (invitedUserId == null) {
             return Broadcast.error(inviteCommand, ServerResponse.NO_SUCH_USER);
         }
         if (!channels.containsKey(channelName)) {
@@ -487,14 +666,15 @@ public final class ServerModel {
         if (!channelValue.getIsPrivate()) {
             return Broadcast.error(inviteCommand, ServerResponse.INVITE_TO_PUBLIC_CHANNEL);
         }
-        if (!channelValue.getOwner().equals(senderNN)) {
+        if (channelValue.getOwnerId() != inviteCommand.getSenderId()) {
             return Broadcast.error(inviteCommand, ServerResponse.USER_NOT_OWNER);
         }
 
-        channelValue.addUser(invitedUserNN);
-        Collection<String> tempUserList = new TreeSet<>();
-        tempUserList.addAll(channelValue.getUserList());
-        return Broadcast.names(inviteCommand, tempUserList, senderNN);
+        shard.addMember(channelName, channelValue, invitedUserId, invitedUserNN);
+        return Broadcast.names(
+                inviteCommand, channelValue.getUserIds(), invitedUserId,
+                channelValue.getNamesPayload(), this
+        );
     }
 
     /**
@@ -521,31 +701,129 @@ public final class ServerModel {
      *         the owner of the channel
      */
     public Broadcast kickUser(KickCommand kickCommand) {
-        String senderNN = kickCommand.getSender();
         String channelName = kickCommand.getChannel();
+        Shard shard = shardFor(channelName);
+        Map<String, Channel> channels = shard.channels;
         Channel channelValue = channels.get(channelName);
         String kickedUser = kickCommand.getUserToKick();
 
-        if (!registeredUsers.containsValue(kickedUser)) {
+        Integer kickedUserId = userIds.get(kickedUser);
+
+        if (kickedUserId == null) {
             return Broadcast.error(kickCommand, ServerResponse.NO_SUCH_USER);
         }
         if (!channels.containsKey(channelName)) {
             return Broadcast.error(kickCommand, ServerResponse.NO_SUCH_CHANNEL);
         }
-        if (!channelValue.getUserList().contains(kickedUser)) {
+        if (!channelValue.hasUser(kickedUserId)) {
             return Broadcast.error(kickCommand, ServerResponse.USER_NOT_IN_CHANNEL);
         }
-        if (!channelValue.getOwner().equals(senderNN)) {
+        if (channelValue.getOwnerId() != kickCommand.getSenderId()) {
             return Broadcast.error(kickCommand, ServerResponse.USER_NOT_OWNER);
         }
 
-        if (channelValue.getOwner().equals(kickedUser)) {
-            channels.remove(channelName);
+        int[] tempUserList = channelValue.getUserIds();
+        if (channelValue.getOwnerId() == kickedUserId) {
+            shard.removeChannel(channelName);
+        } else {
+            shard.removeMember(channelName, channelValue, kickedUserId, kickedUser);
+        }
+        return Broadcast.okay(kickCommand, tempUserList, this);
+    }
+
+    // =========================================================================
+    // == Shards
+    // =========================================================================
+
+    /**
+     * The channels in one shard, and the reverse index of which of them each
+     * user is in. Channel membership must only be changed through a shard's
+     * methods, so that the index stays consistent; the index lets
+     * disconnections and nickname changes touch only the channels the user
+     * is actually in.
+     */
+    private static final class Shard {
+        private final Map<String, Channel> channels;
+        private final Map<Integer, Set<String>> memberships;
+        // The size of channels, published for any thread to read
+        private volatile int channelCount;
+        // Bumped by every change to the channels or their members, and
+        // published for any thread to read; only one thread writes it
+        private volatile long version;
+
+        Shard() {
+            channels = new TreeMap<>();
+            memberships = new HashMap<>();
+            channelCount = 0;
+            version = 0;
+        }
+
+        /**
+         * @return The names of the channels in this shard that the user is in;
+         *         must not be modified
+         */
+        Set<String> channelsOf(int userId) {
+            Set<String> channelNames = memberships.get(userId);
+            if (channelNames == null) {
+                return Collections.emptySet();
+            }
+            return channelNames;
+        }
+
+        void addChannel(String channelName, Channel channel) {
+            channels.put(channelName, channel);
+            channelCount = channels.size();
+            version++;
+            for (int userId : channel.getUserIds()) {
+                index(userId, channelName);
+            }
+        }
+
+        /**
+         * Removes a channel. Its member list is left as it was, so that the
+         * members can still be notified.
+         */
+        void removeChannel(String channelName) {
+            Channel channel = channels.remove(channelName);
+            channelCount = channels.size();
+            version++;
+            if (channel != null) {
+                for (int userId : channel.getUserIds()) {
+                    unindex(userId, channelName);
+                }
+            }
+        }
+
+        void addMember(String channelName, Channel channel, int userId, String nickname) {
+            channel.addUser(userId, nickname);
+            index(userId, channelName);
+            version++;
+        }
+
+        void removeMember(String channelName, Channel channel, int userId, String nickname) {
+            channel.banUser(userId, nickname);
+            unindex(userId, channelName);
+            version++;
+        }
+
+        private void index(int userId, String channelName) {
+            Set<String> channelNames = memberships.get(userId);
+            if (channelNames == null) {
+                channelNames = new HashSet<>();
+                memberships.put(userId, channelNames);
+            }
+            channelNames.add(channelName);
+        }
+
+        private void unindex(int userId, String channelName) {
+            Set<String> channelNames = memberships.get(userId);
+            if (channelNames != null) {
+                channelNames.remove(channelName);
+                if (channelNames.isEmpty()) {
+                    memberships.remove(userId);
+                }
+            }
         }
-        Collection<String> tempUserList = new TreeSet<>();
-        tempUserList.addAll(channelValue.getUserList());
-        channelValue.banUser(kickedUser);
-        return Broadcast.okay(kickCommand, tempUserList);
     }
 
 }
@@ -14,6 +14,13 @@ public enum ServerResponse {
      */
     OKAY(200),
 
+    /**
+     * Response by the server when a client sends a line that is not a
+     * command: an unknown command type, too many parameters, a bad
+     * invite-only flag or a message without a payload.
+     */
+    INVALID_COMMAND(400),
+
     /**
      * Response by the server when a user tries to change his/her
      * nickname to an invalid string.
@@ -0,0 +1,79 @@
+package org.cis120;
+
+/**
+ * A {@code SlowConsumerPolicy} decides what happens to a client whose
+ * {@link OutboundQueue} has grown past a line or byte threshold, which
+ * happens when the client reads more slowly than its channels produce
+ * responses.
+ *
+ * A single policy is shared by every connection of a {@link ServerBackend}.
+ * Its thresholds and action can be changed while the server runs and take
+ * effect on the next response queued.
+ */
+final class SlowConsumerPolicy {
+
+    /**
+     * What to do with a client that is over one of the thresholds.
+     */
+    enum Action {
+        /** Discard the oldest queued {@code MESG} lines to make room. */
+        DROP_OLDEST,
+        /** Discard the {@code MESG} lines that do not fit. */
+        DROP_NEWEST,
+        /** Close the connection, as if the client had disconnected. */
+        DISCONNECT
+    }
+
+    private volatile Action action;
+    private volatile int maxLines;
+    private volatile long maxBytes;
+
+    /**
+     * @param action   the action taken when a threshold is exceeded
+     * @param maxLines the most lines that may be queued for one client
+     * @param maxBytes the most bytes that may be queued for one client
+     */
+    SlowConsumerPolicy(Action action, int maxLines, long maxBytes) {
+        setAction(action);
+        setMaxLines(maxLines);
+        setMaxBytes(maxBytes);
+    }
+
+    Action getAction() {
+        return action;
+    }
+
+    void setAction(Action action) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        this.action = action;
+    }
+
+    int getMaxLines() {
+        return maxLines;
+    }
+
+    void setMaxLines(int maxLines) {
+        if (maxLines < 1) {
+            throw new IllegalArgumentException("maxLines must be positive");
+        }
+        this.maxLines = maxLines;
+    }
+
+    long getMaxBytes() {
+        return maxBytes;
+    }
+
+    void setMaxBytes(long maxBytes) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public String toString() {
+        return action + " above " + maxLines + " lines or " + maxBytes + " bytes";
+    }
+}
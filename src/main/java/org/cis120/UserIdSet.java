@@ -0,0 +1,150 @@
+package org.cis120;
+
+import java.util.Arrays;
+
+/**
+ * A {@code UserIdSet} is a set of non-negative user IDs, such as the members
+ * of a {@link Channel}.
+ *
+ * IDs are kept unboxed in a single open-addressed table, so each member costs
+ * four to eight bytes rather than a map entry, a boxed key and a nickname
+ * reference. Adding, removing and looking up an ID take constant time on
+ * average.
+ */
+final class UserIdSet {
+
+    private static final int FREE = -1;
+    private static final int MIN_CAPACITY = 8;
+
+    private int[] table;
+    private int size;
+
+    UserIdSet() {
+        table = newTable(MIN_CAPACITY);
+        size = 0;
+    }
+
+    /**
+     * @return The number of IDs in the set
+     */
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean contains(int userId) {
+        if (userId < 0) {
+            return false;
+        }
+        int mask = table.length - 1;
+        for (int i = slot(userId, mask); table[i] != FREE; i = (i + 1) & mask) {
+            if (table[i] == userId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the ID was not already in the set
+     */
+    boolean add(int userId) {
+        if (userId < 0) {
+            throw new IllegalArgumentException("Invalid user ID: " + userId);
+        }
+        int mask = table.length - 1;
+        int i = slot(userId, mask);
+        for (; table[i] != FREE; i = (i + 1) & mask) {
+            if (table[i] == userId) {
+                return false;
+            }
+        }
+        table[i] = userId;
+        // Keep the table at most half full, so probes stay short
+        if (++size * 2 > table.length) {
+            resize(table.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the ID was in the set
+     */
+    boolean remove(int userId) {
+        if (userId < 0) {
+            return false;
+        }
+        int mask = table.length - 1;
+        int i = slot(userId, mask);
+        for (; table[i] != userId; i = (i + 1) & mask) {
+            if (table[i] == FREE) {
+                return false;
+            }
+        }
+        // Shift later entries of the same probe run back over the hole, so
+        // that lookups never need to skip deleted slots
+        int hole = i;
+        for (int j = (i + 1) & mask; table[j] != FREE; j = (j + 1) & mask) {
+            int home = slot(table[j], mask);
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                table[hole] = table[j];
+                hole = j;
+            }
+        }
+        table[hole] = FREE;
+        size--;
+        if (table.length > MIN_CAPACITY && size * 8 < table.length) {
+            resize(table.length / 2);
+        }
+        return true;
+    }
+
+    /**
+     * @return A new array holding the IDs in the set, in no particular order
+     */
+    int[] toArray() {
+        int[] ids = new int[size];
+        int n = 0;
+        for (int id : table) {
+            if (id != FREE) {
+                ids[n++] = id;
+            }
+        }
+        return ids;
+    }
+
+    // ==========================================================================
+    // Private utility methods
+    // ==========================================================================
+
+    private static int[] newTable(int capacity) {
+        int[] table = new int[capacity];
+        Arrays.fill(table, FREE);
+        return table;
+    }
+
+    private static int slot(int userId, int mask) {
+        // IDs are handed out in sequence; scramble them so that runs of
+        // consecutive IDs do not form long probe chains
+        int h = userId * 0x9E3779B9;
+        return (h ^ h >>> 16) & mask;
+    }
+
+    private void resize(int capacity) {
+        int[] old = table;
+        table = newTable(capacity);
+        int mask = capacity - 1;
+        for (int id : old) {
+            if (id != FREE) {
+                int i = slot(id, mask);
+                while (table[i] != FREE) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = id;
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.cis120;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to Java 21 virtual threads from code compiled for the 1.8 baseline.
+ *
+ * The JDK method is looked up reflectively so that the default build keeps
+ * running on older JVMs; only selecting {@link ServerConfig.IoMode#VIRTUAL}
+ * requires a Java 21 runtime.
+ */
+final class VirtualThreads {
+
+    /**
+     * Creates an executor that starts a new virtual thread for each task.
+     *
+     * @return the executor
+     * @throws IllegalStateException if the running JVM has no virtual threads
+     */
+    static ExecutorService newExecutor() {
+        Method factory;
+        try {
+            factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException nsmx) {
+            throw new IllegalStateException(
+                    "Virtual threads require Java 21 or later, but this is Java "
+                            + System.getProperty("java.version")
+            );
+        }
+        try {
+            return (ExecutorService) factory.invoke(null);
+        } catch (IllegalAccessException | InvocationTargetException x) {
+            throw new IllegalStateException("Could not create virtual thread executor", x);
+        }
+    }
+
+    // Prevents the instantiation of VirtualThreads objects
+    private VirtualThreads() {
+    }
+}
@@ -0,0 +1,121 @@
+package org.cis120;
+
+/**
+ * The {@code WireEncoder} renders every kind of line the server sends, such
+ * as {@code :<sender> MESG <channel> :<message>}, for {@link Command} and
+ * {@link Broadcast}.
+ *
+ * Each line is appended piece by piece to a {@link StringBuilder} that the
+ * calling thread reuses from one line to the next, so nothing is parsed and
+ * nothing but the finished string is allocated. The output is exactly what
+ * {@code String.format} produced for the same line, except that numbers are
+ * always written in ASCII digits whatever the default locale.
+ */
+final class WireEncoder {
+
+    // A builder that has grown past this is not kept for the next line, so
+    // one huge message does not pin its memory for good
+    private static final int MAX_RETAINED_CAPACITY = 8192;
+
+    private static final ThreadLocal<StringBuilder> BUILDERS = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
+
+    // Prevents the instantiation of any WireEncoder objects
+    private WireEncoder() {
+    }
+
+    // ==========================================================================
+    // Commands
+    // ==========================================================================
+
+    /** @return {@code :<sender> NICK <newNickname>} */
+    static String nick(String sender, String newNickname) {
+        return finish(start(sender).append(" NICK ").append(newNickname));
+    }
+
+    /** @return {@code :<sender> CREATE <channel> <0 or 1>} */
+    static String create(String sender, String channel, boolean inviteOnly) {
+        return finish(
+                start(sender).append(" CREATE ").append(channel).append(inviteOnly ? " 1" : " 0")
+        );
+    }
+
+    /** @return {@code :<sender> JOIN <channel>} */
+    static String join(String sender, String channel) {
+        return finish(start(sender).append(" JOIN ").append(channel));
+    }
+
+    /** @return {@code :<sender> MESG <channel> :<message>} */
+    static String message(String sender, String channel, String message) {
+        return finish(
+                start(sender).append(" MESG ").append(channel).append(" :").append(message)
+        );
+    }
+
+    /** @return {@code :<sender> LEAVE <channel>} */
+    static String leave(String sender, String channel) {
+        return finish(start(sender).append(" LEAVE ").append(channel));
+    }
+
+    /** @return {@code :<sender> INVITE <channel> <userToInvite>} */
+    static String invite(String sender, String channel, String userToInvite) {
+        return finish(
+                start(sender).append(" INVITE ").append(channel).append(' ').append(userToInvite)
+        );
+    }
+
+    /** @return {@code :<sender> KICK <channel> <userToKick>} */
+    static String kick(String sender, String channel, String userToKick) {
+        return finish(
+                start(sender).append(" KICK ").append(channel).append(' ').append(userToKick)
+        );
+    }
+
+    // ==========================================================================
+    // Server responses
+    // ==========================================================================
+
+    /** @return {@code :<recipient> ERROR <code>} */
+    static String error(String recipient, int code) {
+        return finish(start(recipient).append(" ERROR ").append(code));
+    }
+
+    /** @return {@code :<nickname> CONNECT} */
+    static String connected(String nickname) {
+        return finish(start(nickname).append(" CONNECT"));
+    }
+
+    /** @return {@code :<user> QUIT} */
+    static String quit(String user) {
+        return finish(start(user).append(" QUIT"));
+    }
+
+    /** @return {@code :<user> NAMES <channel> :<payload>} */
+    static String names(String user, String channel, String payload) {
+        return finish(
+                start(user).append(" NAMES ").append(channel).append(" :").append(payload)
+        );
+    }
+
+    // ==========================================================================
+    // Private utility methods
+    // ==========================================================================
+
+    private static StringBuilder start(String sender) {
+        StringBuilder builder = BUILDERS.get();
+        builder.setLength(0);
+        return builder.append(':').append(sender);
+    }
+
+    private static String finish(StringBuilder builder) {
+        String line = builder.toString();
+        if (builder.capacity() > MAX_RETAINED_CAPACITY) {
+            BUILDERS.remove();
+        }
+        return line;
+    }
+}
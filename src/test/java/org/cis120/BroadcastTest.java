@@ -0,0 +1,67 @@
+package org.cis120;
+
+import org.junit.jupiter.api.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BroadcastTest {
+
+    private ServerModel model;
+
+    @BeforeEach
+    public void setUp() {
+        model = new ServerModel();
+        for (int i = 0; i < 3; i++) {
+            model.registerUser(i);
+        }
+    }
+
+    private static List<String> visit(Broadcast broadcast, ServerModel model) {
+        final List<String> visited = new ArrayList<>();
+        broadcast.forEachResponse(model, new Broadcast.Visitor() {
+            @Override
+            public void visit(int userId, String response) {
+                visited.add(userId + " " + response);
+            }
+        });
+        return visited;
+    }
+
+    @Test
+    public void testUserIdBroadcastMatchesNicknameBroadcast() {
+        Command message = new MessageCommand(0, "User0", "java", "hi");
+        Broadcast byId = Broadcast.okay(message, new int[] { 0, 2 }, model);
+        Broadcast byNickname = Broadcast.okay(message, Arrays.asList("User0", "User2"));
+        assertEquals(byNickname, byId, "same responses");
+        assertEquals(byNickname.getResponses(model), byId.getResponses(model), "same by ID");
+        assertEquals(visit(byNickname, model), visit(byId, model), "same visits");
+    }
+
+    @Test
+    public void testNamesLineFollowsJoinLine() {
+        Command join = new JoinCommand(1, "User1", "java");
+        Broadcast names = Broadcast.names(join, new int[] { 0, 1 }, 1, "@User0 User1", model);
+        List<String> expected = Arrays.asList(
+                "0 " + join,
+                "1 " + join,
+                "1 :User1 NAMES java :@User0 User1"
+        );
+        assertEquals(expected, visit(names, model), "JOIN to all, then NAMES to the joiner");
+    }
+
+    @Test
+    public void testRecipientWhoDeregistersKeepsBroadcastStable() {
+        Command message = new MessageCommand(0, "User0", "java", "hi");
+        Broadcast byId = Broadcast.okay(message, new int[] { 0, 2 }, model);
+        Broadcast sameIds = Broadcast.okay(message, new int[] { 0, 2 }, model);
+        int hash = byId.hashCode();
+        model.deregisterUser(2);
+        assertEquals(hash, byId.hashCode(), "hash unchanged");
+        assertEquals(sameIds, byId, "same IDs, same lines");
+        assertNotEquals(Broadcast.okay(message, Arrays.asList("User0", "User2")), byId,
+                "deregistered recipient matches no nickname");
+        assertTrue(byId.toString().contains("#2"), byId.toString());
+    }
+}
@@ -0,0 +1,44 @@
+package org.cis120;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChannelNamesTest {
+
+    @Test
+    public void testPayloadSortedWithOwnerMarked() {
+        ChannelNames names = new ChannelNames("mike");
+        names.add("zed");
+        names.add("alice");
+        names.add("alice");
+        assertEquals("alice @mike zed", names.getPayload(), "sorted, owner marked");
+    }
+
+    @Test
+    public void testPatchedByRemoveAndRename() {
+        ChannelNames names = new ChannelNames("mike");
+        names.add("alice");
+        names.add("zed");
+        assertEquals("alice @mike zed", names.getPayload(), "before");
+        names.remove("alice");
+        names.remove("nobody");
+        assertEquals("@mike zed", names.getPayload(), "after remove");
+        names.rename("mike", "bob");
+        assertEquals("@bob zed", names.getPayload(), "owner renamed and moved");
+        names.rename("zed", "amy");
+        assertEquals("amy @bob", names.getPayload(), "member renamed and moved");
+        names.rename("nobody", "carl");
+        assertEquals("amy @bob", names.getPayload(), "renaming a non-member does nothing");
+    }
+
+    @Test
+    public void testPayloadCachedUntilChange() {
+        ChannelNames names = new ChannelNames("mike");
+        String payload = names.getPayload();
+        assertSame(payload, names.getPayload(), "cached");
+        names.add("mike");
+        assertSame(payload, names.getPayload(), "cached across a no-op add");
+        names.add("zed");
+        assertEquals("@mike zed", names.getPayload(), "rebuilt");
+    }
+}
@@ -0,0 +1,29 @@
+package org.cis120;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChannelTest {
+
+    @Test
+    public void testSnapshotSharedUntilMembershipChanges() {
+        Channel channel = new Channel(5, "User5", false);
+        channel.addUser(3, "User3");
+        int[] snapshot = channel.getUserIds();
+        assertArrayEquals(new int[] { 3, 5 }, snapshot, "sorted members");
+        assertSame(snapshot, channel.getUserIds(), "reused while unchanged");
+        channel.addUser(3, "User3");
+        assertSame(snapshot, channel.getUserIds(), "reused after a no-op add");
+    }
+
+    @Test
+    public void testOldSnapshotUnaffectedByChanges() {
+        Channel channel = new Channel(0, "User0", false);
+        channel.addUser(1, "User1");
+        int[] before = channel.getUserIds();
+        channel.banUser(0, "User0");
+        channel.addUser(2, "User2");
+        assertArrayEquals(new int[] { 0, 1 }, before, "old snapshot unchanged");
+        assertArrayEquals(new int[] { 1, 2 }, channel.getUserIds(), "new snapshot");
+    }
+}
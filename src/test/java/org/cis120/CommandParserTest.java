@@ -0,0 +1,57 @@
+package org.cis120;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CommandParserTest {
+
+    private static Command parse(String commandString) {
+        return CommandParser.parse(0, "User0", commandString);
+    }
+
+    @Test
+    public void testParsesEveryCommandType() {
+        assertEquals(new CreateCommand(0, "User0", "java", true), parse("CREATE java 1"), "CREATE");
+        assertEquals(new InviteCommand(0, "User0", "java", "bob"), parse("INVITE java bob"),
+                "INVITE");
+        assertEquals(new JoinCommand(0, "User0", "java"), parse("JOIN java"), "JOIN");
+        assertEquals(new KickCommand(0, "User0", "java", "bob"), parse("KICK java bob"), "KICK");
+        assertEquals(new LeaveCommand(0, "User0", "java"), parse("LEAVE java"), "LEAVE");
+        assertEquals(new MessageCommand(0, "User0", "java", "hi : there"),
+                parse("MESG java :hi : there"), "MESG");
+        assertEquals(new NicknameCommand(0, "User0", "bob"), parse("NICK bob"), "NICK");
+    }
+
+    private static ServerResponse error(String commandString) {
+        Command command = parse(commandString);
+        assertTrue(command instanceof InvalidCommand, commandString + " is invalid");
+        return ((InvalidCommand) command).getError();
+    }
+
+    @Test
+    public void testInvalidInputIsAnsweredWithAnError() {
+        assertEquals(ServerResponse.INVALID_COMMAND, error(""), "empty");
+        assertEquals(ServerResponse.INVALID_COMMAND, error("HELLO java"), "unknown verb");
+        assertEquals(ServerResponse.INVALID_COMMAND, error("join java"),
+                "verb is case-sensitive");
+        assertEquals(ServerResponse.INVALID_COMMAND, error("JOINS java"),
+                "verb must match exactly");
+        assertEquals(ServerResponse.INVALID_COMMAND, error(":hi"), "payload without verb");
+        assertEquals(ServerResponse.INVALID_COMMAND, error("KICK a b c"), "too many parameters");
+        assertEquals(ServerResponse.INVALID_COMMAND, error("CREATE java 2"),
+                "bad invite-only flag");
+        assertEquals(ServerResponse.INVALID_COMMAND, error("CREATE java"), "missing flag");
+        assertEquals(ServerResponse.INVALID_NAME, error("NICK"), "missing nickname");
+        assertEquals(ServerResponse.NO_SUCH_CHANNEL, error("JOIN"), "missing channel");
+        assertEquals(ServerResponse.NO_SUCH_USER, error("INVITE java"), "missing user");
+        assertEquals(ServerResponse.INVALID_COMMAND, error("MESG java"), "missing payload");
+        assertEquals(parse("MESG java"), parse("MESG java"), "equal by line");
+    }
+
+    @Test
+    public void testEmptyPayloadAndTrailingSpace() {
+        assertEquals(new MessageCommand(0, "User0", "java", ""), parse("MESG java :"),
+                "empty payload");
+        assertEquals(new JoinCommand(0, "User0", "java"), parse("JOIN java "), "trailing space");
+    }
+}
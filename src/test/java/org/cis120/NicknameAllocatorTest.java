@@ -0,0 +1,53 @@
+package org.cis120;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NicknameAllocatorTest {
+
+    @Test
+    public void testAllocatesInOrder() {
+        NicknameAllocator allocator = new NicknameAllocator();
+        for (int i = 0; i < 5; i++) {
+            assertEquals("User" + i, allocator.allocate(), "sequential default nicknames");
+        }
+    }
+
+    @Test
+    public void testReusesLowestReleasedSuffix() {
+        NicknameAllocator allocator = new NicknameAllocator();
+        for (int i = 0; i < 5; i++) {
+            allocator.allocate();
+        }
+        allocator.release("User3");
+        allocator.release("User1");
+        assertEquals("User1", allocator.allocate(), "lowest released first");
+        assertEquals("User3", allocator.allocate(), "then the next released");
+        assertEquals("User5", allocator.allocate(), "then past the end");
+    }
+
+    @Test
+    public void testSkipsClaimedNicknames() {
+        NicknameAllocator allocator = new NicknameAllocator();
+        allocator.allocate();
+        allocator.allocate();
+        allocator.release("User0");
+        allocator.claim("User0");
+        allocator.claim("User2");
+        allocator.claim("User3");
+        assertEquals("User4", allocator.allocate(), "claimed above and below skipped");
+        allocator.release("User2");
+        assertEquals("User2", allocator.allocate(), "released claim reused");
+    }
+
+    @Test
+    public void testSuffixOfOnlyAcceptsGeneratedForm() {
+        assertEquals(0, NicknameAllocator.suffixOf("User0"), "User0");
+        assertEquals(42, NicknameAllocator.suffixOf("User42"), "User42");
+        assertEquals(-1, NicknameAllocator.suffixOf("User"), "no digits");
+        assertEquals(-1, NicknameAllocator.suffixOf("User007"), "leading zeros");
+        assertEquals(-1, NicknameAllocator.suffixOf("user1"), "wrong case");
+        assertEquals(-1, NicknameAllocator.suffixOf("User1a"), "not all digits");
+        assertEquals(-1, NicknameAllocator.suffixOf("User99999999999"), "too large");
+    }
+}
@@ -0,0 +1,68 @@
+package org.cis120;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OutboundQueueTest {
+
+    private static OutboundQueue queue(SlowConsumerPolicy.Action action, int maxLines) {
+        return new OutboundQueue(new SlowConsumerPolicy(action, maxLines, 1 << 20));
+    }
+
+    @Test
+    public void testUnderThresholdKeepsOrder() {
+        OutboundQueue queue = queue(SlowConsumerPolicy.Action.DISCONNECT, 3);
+        assertTrue(queue.offer(Frame.of(":User0 JOIN java")), "first line queued");
+        assertTrue(queue.offer(Frame.of(":User0 MESG java :hi")), "second line queued");
+        assertEquals(2, queue.size(), "size gauge");
+        assertEquals(38, queue.bytes(), "bytes gauge counts terminators");
+        assertEquals(":User0 JOIN java", queue.poll().getText(), "first line out first");
+        assertEquals(":User0 MESG java :hi", queue.poll().getText(), "second line out second");
+        assertNull(queue.poll(), "queue drained");
+        assertEquals(0, queue.bytes(), "bytes gauge after draining");
+    }
+
+    @Test
+    public void testDisconnectPolicy() {
+        OutboundQueue queue = queue(SlowConsumerPolicy.Action.DISCONNECT, 1);
+        assertTrue(queue.offer(Frame.of(":User0 MESG java :a")), "fits");
+        assertFalse(queue.offer(Frame.of(":User0 MESG java :b")), "over threshold disconnects");
+    }
+
+    @Test
+    public void testDropOldestDropsOnlyMessages() {
+        OutboundQueue queue = queue(SlowConsumerPolicy.Action.DROP_OLDEST, 2);
+        queue.offer(Frame.of(":User0 JOIN java"));
+        queue.offer(Frame.of(":User0 MESG java :a"));
+        assertTrue(queue.offer(Frame.of(":User0 MESG java :b")), "newest message kept");
+        assertEquals(1, queue.dropped(), "one message dropped");
+        assertEquals(":User0 JOIN java", queue.poll().getText(), "JOIN is never dropped");
+        assertEquals(":User0 MESG java :b", queue.poll().getText(), "oldest message was dropped");
+    }
+
+    @Test
+    public void testDropNewestDropsOnlyMessages() {
+        OutboundQueue queue = queue(SlowConsumerPolicy.Action.DROP_NEWEST, 1);
+        queue.offer(Frame.of(":User0 MESG java :a"));
+        assertTrue(queue.offer(Frame.of(":User0 MESG java :b")), "new message dropped");
+        assertEquals(1, queue.dropped(), "one message dropped");
+        assertFalse(queue.offer(Frame.of(":User0 LEAVE java")), "LEAVE cannot be dropped");
+        assertEquals(":User0 MESG java :a", queue.poll().getText(), "queued message kept");
+    }
+
+    @Test
+    public void testDropOldestWithNoMessagesDisconnects() {
+        OutboundQueue queue = queue(SlowConsumerPolicy.Action.DROP_OLDEST, 1);
+        queue.offer(Frame.of(":User0 JOIN java"));
+        assertFalse(queue.offer(Frame.of(":User0 LEAVE java")), "nothing can be dropped");
+    }
+
+    @Test
+    public void testByteThreshold() {
+        OutboundQueue queue = new OutboundQueue(
+                new SlowConsumerPolicy(SlowConsumerPolicy.Action.DISCONNECT, 100, 30)
+        );
+        assertTrue(queue.offer(Frame.of(":User0 MESG java :hello")), "24 bytes fit");
+        assertFalse(queue.offer(Frame.of(":User0 MESG java :hello")), "48 bytes do not");
+    }
+}
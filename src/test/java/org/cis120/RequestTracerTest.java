@@ -0,0 +1,58 @@
+package org.cis120;
+
+import org.junit.jupiter.api.*;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestTracerTest {
+
+    @Test
+    public void testNothingTracedWhenSamplingIsOff() {
+        RequestTracer tracer = new RequestTracer(0, 4);
+        assertNull(tracer.sample(0, "MESG java :hi"), "sampling off");
+        tracer.setSampling(1);
+        assertNotNull(tracer.sample(0, "MESG java :hi"), "every request traced");
+    }
+
+    @Test
+    public void testCompleteOnlyOnceEveryLineIsWritten() {
+        RequestTracer tracer = new RequestTracer(1, 4);
+        RequestTracer.Trace trace = tracer.sample(3, "MESG java :hi");
+        trace.enqueued();
+        trace.applied(System.nanoTime(), System.nanoTime());
+        Frame first = Frame.of(":User3 MESG java :hi", trace);
+        Frame second = Frame.of(":User3 MESG java :hi", trace);
+        trace.lineQueued();
+        trace.lineQueued();
+
+        first.written();
+        assertTrue(tracer.getTraces().isEmpty(), "written before the hand-off");
+        trace.handedOff();
+        assertTrue(tracer.getTraces().isEmpty(), "one line still to write");
+        second.written();
+        assertEquals(1, tracer.getTraces().size(), "completed by the last line");
+        assertTrue(trace.getTotalNanos() >= 0, "total time");
+    }
+
+    @Test
+    public void testRequestWithoutResponsesCompletesOnHandOff() {
+        RequestTracer tracer = new RequestTracer(1, 4);
+        RequestTracer.Trace trace = tracer.sample(0, "BOGUS");
+        trace.handedOff();
+        assertEquals(1, tracer.getTraces().size(), "nothing to write");
+        assertTrue(trace.toString().startsWith("user 0 BOGUS 0 lines:"), trace.toString());
+    }
+
+    @Test
+    public void testBufferKeepsMostRecentTracesInOrder() {
+        RequestTracer tracer = new RequestTracer(1, 2);
+        for (int i = 0; i < 5; i++) {
+            tracer.sample(i, "NICK User" + i).handedOff();
+        }
+        List<RequestTracer.Trace> traces = tracer.getTraces();
+        assertEquals(2, traces.size(), "buffer bounded");
+        assertEquals(3, traces.get(0).getUserId(), "oldest kept first");
+        assertEquals(4, traces.get(1).getUserId(), "newest last");
+        assertEquals(2, tracer.dump().split("\n").length, "one line per trace");
+    }
+}
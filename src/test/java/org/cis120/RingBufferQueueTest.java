@@ -0,0 +1,133 @@
+package org.cis120;
+
+import org.junit.jupiter.api.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RingBufferQueueTest {
+
+    private static RingBufferQueue<Integer> queue(int capacity) {
+        return new RingBufferQueue<>(capacity, RingBufferQueue.WaitStrategy.PARK);
+    }
+
+    @Test
+    public void testFifoAcrossWrapAround() {
+        RingBufferQueue<Integer> queue = queue(4);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(queue.offer(2 * i), "offer first");
+            assertTrue(queue.offer(2 * i + 1), "offer second");
+            assertEquals(2, queue.size(), "size after two offers");
+            assertEquals(2 * i, (int) queue.poll(), "first out first");
+            assertEquals(2 * i + 1, (int) queue.poll(), "second out second");
+            assertNull(queue.poll(), "empty again");
+        }
+    }
+
+    @Test
+    public void testCapacityRoundedUpAndEnforced() {
+        RingBufferQueue<Integer> queue = queue(3);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(i), "fits in four slots");
+        }
+        assertFalse(queue.offer(4), "full");
+        assertEquals(0, queue.remainingCapacity(), "no capacity left");
+        assertEquals(0, (int) queue.poll(), "head");
+        assertTrue(queue.offer(4), "slot freed by poll");
+    }
+
+    @Test
+    public void testSingleSlotRequestRoundedToTwo() {
+        RingBufferQueue<Integer> queue = queue(1);
+        assertTrue(queue.offer(0), "first fits");
+        assertTrue(queue.offer(1), "second fits");
+        assertFalse(queue.offer(2), "third does not");
+    }
+
+    @Test
+    public void testDrainToRespectsMax() {
+        RingBufferQueue<Integer> queue = queue(8);
+        for (int i = 0; i < 5; i++) {
+            queue.offer(i);
+        }
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(3, queue.drainTo(drained, 3), "drained up to max");
+        assertEquals(2, queue.drainTo(drained), "drained the rest");
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, (int) drained.get(i), "drained in order");
+        }
+    }
+
+    @Test
+    public void testIterationSeesQueuedElementsAcrossWrapAround() {
+        RingBufferQueue<Integer> queue = queue(4);
+        for (int i = 0; i < 6; i++) {
+            queue.offer(i);
+            if (i < 3) {
+                queue.poll();
+            }
+        }
+        assertEquals("[3, 4, 5]", queue.toString(), "head first");
+        assertTrue(queue.contains(4), "queued");
+        assertFalse(queue.contains(2), "already taken");
+        assertEquals(3, (int) queue.poll(), "iteration takes nothing");
+    }
+
+    @Test
+    public void testPollTimesOut() throws InterruptedException {
+        RingBufferQueue<Integer> queue = queue(2);
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS), "nothing to take");
+    }
+
+    /**
+     * Has {@code producers} threads put {@code perProducer} elements each
+     * while this thread takes them, and checks that each producer's elements
+     * arrive in order and that none are lost.
+     */
+    private static void exchange(
+            RingBufferQueue.WaitStrategy strategy, final int producers, final int perProducer
+    ) throws InterruptedException {
+        final RingBufferQueue<int[]> queue = new RingBufferQueue<>(16, strategy);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < perProducer; i++) {
+                            queue.put(new int[] { producer, i });
+                        }
+                    } catch (InterruptedException ix) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            threads[p].start();
+        }
+        int[] next = new int[producers];
+        for (int i = 0; i < producers * perProducer; i++) {
+            int[] element = queue.poll(10, TimeUnit.SECONDS);
+            assertNotNull(element, strategy + ": element arrived");
+            assertEquals(next[element[0]]++, element[1], strategy + ": per-producer order");
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(queue.isEmpty(), strategy + ": nothing left over");
+    }
+
+    @Test
+    public void testManyProducersOneConsumer() throws InterruptedException {
+        // SPIN is left out: busy producers and a spinning consumer starve
+        // each other when there are fewer CPUs than threads
+        exchange(RingBufferQueue.WaitStrategy.PARK, 4, 5000);
+        exchange(RingBufferQueue.WaitStrategy.YIELD, 4, 5000);
+    }
+
+    @Test
+    public void testSpinOneProducerOneConsumer() throws InterruptedException {
+        exchange(RingBufferQueue.WaitStrategy.SPIN, 1, 200);
+    }
+}
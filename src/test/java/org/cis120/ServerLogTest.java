@@ -0,0 +1,101 @@
+package org.cis120;
+
+import org.junit.jupiter.api.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServerLogTest {
+
+    private BlockingQueue<String> lines;
+    private ServerLog openLog;
+
+    @AfterEach
+    public void tearDown() {
+        if (openLog != null) {
+            openLog.close();
+        }
+    }
+
+    private ServerLog log(ServerLog.Level level, int messageSampling) {
+        lines = new LinkedBlockingQueue<>();
+        openLog = new ServerLog(new ServerLog.Sink() {
+            @Override
+            public void write(String line) {
+                lines.add(line);
+            }
+
+            @Override
+            public void flush() {
+            }
+        }, level, messageSampling, 16);
+        return openLog;
+    }
+
+    private String next() throws InterruptedException {
+        return lines.poll(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testFormatsTraffic() throws InterruptedException {
+        ServerLog log = log(ServerLog.Level.INFO, 1);
+        log.request(3, "JOIN java", false);
+        log.response(3, Frame.of(":User3 JOIN java"));
+        assertEquals("Request received from user 3: \"JOIN java\"", next(), "request line");
+        assertEquals("Response sent to user 3: \":User3 JOIN java\"", next(), "response line");
+    }
+
+    @Test
+    public void testLevelFiltersTraffic() throws InterruptedException {
+        ServerLog log = log(ServerLog.Level.WARN, 1);
+        log.request(0, "JOIN java", false);
+        log.warn("marker");
+        assertEquals("marker", next(), "request below level not logged");
+    }
+
+    @Test
+    public void testOffLogsNothing() throws InterruptedException {
+        ServerLog log = log(ServerLog.Level.OFF, 1);
+        log.error("error", null);
+        log.setLevel(ServerLog.Level.ERROR);
+        log.error("marker", null);
+        assertEquals("marker", next(), "nothing logged while off");
+    }
+
+    @Test
+    public void testSamplingOnlyAffectsMessages() throws InterruptedException {
+        ServerLog log = log(ServerLog.Level.INFO, Integer.MAX_VALUE);
+        for (int i = 0; i < 10; i++) {
+            log.request(0, ":User0 MESG java :spam", true);
+        }
+        log.request(0, "LEAVE java", false);
+        String line = next();
+        while (line.contains("MESG")) {
+            line = next();
+        }
+        assertEquals("Request received from user 0: \"LEAVE java\"", line, "LEAVE not sampled");
+    }
+
+    @Test
+    public void testInvalidSampling() {
+        ServerLog log = log(ServerLog.Level.INFO, 1);
+        try {
+            log.setMessageSampling(0);
+            fail("sampling below 1 accepted");
+        } catch (IllegalArgumentException iax) {
+            assertEquals(1, log.getMessageSampling(), "sampling unchanged");
+        }
+    }
+
+    @Test
+    public void testCloseWritesWhatIsLeftAndStops() throws InterruptedException {
+        ServerLog log = log(ServerLog.Level.INFO, 1);
+        log.warn("before");
+        log.close();
+        assertEquals("before", lines.poll(), "written before close returns");
+        log.warn("after");
+        assertEquals(1, log.getDropped(), "dropped once closed");
+        assertTrue(lines.isEmpty(), "nothing written after close");
+    }
+}
@@ -0,0 +1,76 @@
+package org.cis120;
+
+import org.junit.jupiter.api.*;
+import java.util.Collections;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServerMetricsTest {
+
+    @Test
+    public void testCountsCommandsByType() {
+        ServerMetrics metrics = new ServerMetrics();
+        metrics.commandReceived(new MessageCommand(0, "User0", "java", "hi"));
+        metrics.commandReceived(new MessageCommand(0, "User0", "java", "again"));
+        metrics.commandReceived(new JoinCommand(1, "User1", "java"));
+        metrics.commandReceived(
+                new InvalidCommand(0, "User0", "HELLO", ServerResponse.INVALID_COMMAND));
+        assertEquals(2, metrics.getCommandCount("MESG"), "two messages");
+        assertEquals(1, metrics.getCommandCount("JOIN"), "one join");
+        assertEquals(0, metrics.getCommandCount("NICK"), "no nickname changes");
+        assertEquals(1, metrics.getCommandCount("invalid"), "one line that was not a command");
+    }
+
+    @Test
+    public void testCountsErrorsByResponse() {
+        ServerMetrics metrics = new ServerMetrics();
+        Command join = new JoinCommand(0, "User0", "java");
+        metrics.responded(Broadcast.error(join, ServerResponse.NO_SUCH_CHANNEL));
+        metrics.responded(Broadcast.error(join, ServerResponse.NO_SUCH_CHANNEL));
+        metrics.responded(Broadcast.okay(join, Collections.singleton("User0")));
+        assertEquals(2, metrics.getErrorCount(ServerResponse.NO_SUCH_CHANNEL), "two errors");
+        assertEquals(0, metrics.getErrorCount(ServerResponse.NO_SUCH_USER), "other error");
+    }
+
+    @Test
+    public void testHistogramBucketsAreCumulative() {
+        ServerMetrics.Histogram histogram = new ServerMetrics.Histogram(new long[] { 1000, 2000 });
+        histogram.record(500);
+        histogram.record(1000);
+        histogram.record(1500);
+        histogram.record(5000);
+        assertEquals(4, histogram.getCount(), "every duration counted");
+        StringBuilder out = new StringBuilder();
+        histogram.writeTo(out, "test_seconds", "A test");
+        String text = out.toString();
+        assertTrue(text.contains("# TYPE test_seconds histogram\n"), "type line");
+        assertTrue(text.contains("test_seconds_bucket{le=\"0.000001\"} 2\n"), "bound is inclusive");
+        assertTrue(text.contains("test_seconds_bucket{le=\"0.000002\"} 3\n"), "cumulative");
+        assertTrue(text.contains("test_seconds_bucket{le=\"+Inf\"} 4\n"), "overflow bucket");
+        assertTrue(text.contains("test_seconds_sum 8.0E-6\n"), "sum in seconds");
+        assertTrue(text.contains("test_seconds_count 4\n"), "count");
+    }
+
+    @Test
+    public void testExpositionListsEveryCounter() {
+        ServerMetrics metrics = new ServerMetrics();
+        metrics.connectionOpened();
+        metrics.bytesRead(10);
+        metrics.bytesWritten(25);
+        metrics.bytesWritten(5);
+        StringBuilder out = new StringBuilder();
+        metrics.writeTo(out);
+        String text = out.toString();
+        assertTrue(text.contains("pennpals_commands_total{command=\"KICK\"} 0\n"), "commands");
+        assertTrue(
+                text.contains(
+                        "pennpals_errors_total{response=\"USER_NOT_OWNER\",code=\"406\"} 0\n"
+                ), "errors"
+        );
+        assertFalse(text.contains("OKAY"), "OKAY is not an error");
+        assertTrue(text.contains("pennpals_connections_opened_total 1\n"), "connections");
+        assertTrue(text.contains("pennpals_bytes_read_total 10\n"), "bytes read");
+        assertTrue(text.contains("pennpals_bytes_written_total 30\n"), "bytes written");
+        assertTrue(text.contains("pennpals_model_apply_seconds_count 0\n"), "apply time");
+        assertTrue(text.contains("pennpals_dispatch_seconds_count 0\n"), "dispatch time");
+    }
+}
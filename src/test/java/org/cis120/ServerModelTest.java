@@ -387,4 +387,189 @@ public class ServerModelTest {
         Broadcast expected = Broadcast.error(kick, ServerResponse.USER_NOT_OWNER);
         assertEquals(expected, kick.updateServerModel(model), "Not Owner Kicking User");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testShardedModelSpansChannels() {
+        ServerModel sharded = new ServerModel(4);
+        sharded.registerUser(0);
+        sharded.registerUser(1);
+        String[] names = { "java", "ocaml", "python", "rust", "scala", "swift" };
+        Set<Integer> shards = new TreeSet<>();
+        for (String name : names) {
+            new CreateCommand(0, "User0", name, false).updateServerModel(sharded);
+            new JoinCommand(1, "User1", name).updateServerModel(sharded);
+            shards.add(sharded.getShard(name));
+        }
+        assertTrue(shards.size() > 1, "channels spread over several shards");
+        assertEquals(new TreeSet<>(Arrays.asList(names)), sharded.getChannels(), "all channels");
+
+        Command nick = new NicknameCommand(1, "User1", "bob");
+        Broadcast expected = Broadcast.okay(nick, Arrays.asList("User0", "bob"));
+        assertEquals(expected, nick.updateServerModel(sharded), "NICK reaches every shard");
+        for (String name : names) {
+            assertTrue(sharded.getUsersInChannel(name).contains("bob"), "renamed in " + name);
+        }
+
+        sharded.deregisterUser(0);
+        assertEquals(0, sharded.getChannels().size(), "owner's channels deleted in every shard");
+    }
+
+    @Test
+    public void testUserIdFollowsNicknameChanges() {
+        model.registerUser(0);
+        model.registerUser(1);
+        new NicknameCommand(1, "User1", "bob").updateServerModel(model);
+        assertEquals(1, model.getUserId("bob"), "new nickname resolves");
+        assertEquals(-1, model.getUserId("User1"), "old nickname released");
+
+        model.deregisterUser(1);
+        assertEquals(-1, model.getUserId("bob"), "deregistered nickname released");
+        assertEquals(0, model.getUserId("User0"), "other users unaffected");
+    }
+
+    @Test
+    public void testNickAndQuitOnlyReachCurrentChannels() {
+        model.registerUser(0);
+        model.registerUser(1);
+        model.registerUser(2);
+        new CreateCommand(0, "User0", "java", false).updateServerModel(model);
+        new CreateCommand(0, "User0", "ocaml", false).updateServerModel(model);
+        new CreateCommand(2, "User2", "rust", false).updateServerModel(model);
+        new JoinCommand(1, "User1", "java").updateServerModel(model);
+        new JoinCommand(1, "User1", "ocaml").updateServerModel(model);
+        new JoinCommand(1, "User1", "rust").updateServerModel(model);
+        new LeaveCommand(1, "User1", "java").updateServerModel(model);
+        new KickCommand(2, "User2", "rust", "User1").updateServerModel(model);
+
+        Command nick = new NicknameCommand(1, "User1", "bob");
+        Broadcast expected = Broadcast.okay(nick, Arrays.asList("User0", "bob"));
+        assertEquals(expected, nick.updateServerModel(model), "only ocaml is notified");
+        assertTrue(model.getUsersInChannel("ocaml").contains("bob"), "renamed in ocaml");
+        assertFalse(model.getUsersInChannel("java").contains("bob"), "not added back to java");
+        assertFalse(model.getUsersInChannel("rust").contains("bob"), "not added back to rust");
+
+        new LeaveCommand(2, "User2", "rust").updateServerModel(model);
+        new CreateCommand(0, "User0", "rust", false).updateServerModel(model);
+        assertEquals(Broadcast.disconnected("User2", Collections.<String>emptySet()),
+                model.deregisterUser(2), "deleted channel no longer indexed");
+        assertEquals(Broadcast.disconnected("bob", Arrays.asList("User0")),
+                model.deregisterUser(1), "QUIT only reaches ocaml");
+        assertEquals(Collections.singleton("User0"), model.getUsersInChannel("ocaml"),
+                "removed from ocaml");
+    }
+
+    @Test
+    public void testDefaultNicknamesAvoidNamesInUse() {
+        model.registerUser(0);
+        model.registerUser(1);
+        new NicknameCommand(0, "User0", "User2").updateServerModel(model);
+        assertEquals(Broadcast.connected("User0"), model.registerUser(2), "freed by NICK");
+        assertEquals(Broadcast.connected("User3"), model.registerUser(3), "User2 taken by NICK");
+        model.deregisterUser(1);
+        assertEquals(Broadcast.connected("User1"), model.registerUser(4), "freed by QUIT");
+    }
+
+    @Test
+    public void testResponsesAddressedByUserId() {
+        model.registerUser(0);
+        model.registerUser(1);
+        new CreateCommand(0, "User0", "java", false).updateServerModel(model);
+        new JoinCommand(1, "User1", "java").updateServerModel(model);
+        Broadcast message = new MessageCommand(0, "User0", "java", "hi").updateServerModel(model);
+
+        Command nick = new NicknameCommand(1, "User1", "bob");
+        Broadcast rename = nick.updateServerModel(model);
+        Map<Integer, List<String>> renameResponses = rename.getResponses(model);
+        assertEquals(new TreeSet<>(Arrays.asList(0, 1)), renameResponses.keySet(), "by ID");
+        assertEquals(Arrays.asList(nick.toString()), renameResponses.get(1), "sender told");
+
+        Map<Integer, List<String>> messageResponses = message.getResponses(model);
+        assertEquals(new TreeSet<>(Arrays.asList(0, 1)), messageResponses.keySet(),
+                "still reaches the renamed user");
+    }
+
+    @Test
+    public void testNamesFollowNicknameChanges() {
+        model.registerUser(0);
+        model.registerUser(1);
+        model.registerUser(2);
+        new CreateCommand(0, "User0", "java", false).updateServerModel(model);
+        new JoinCommand(1, "User1", "java").updateServerModel(model);
+        new NicknameCommand(0, "User0", "zed").updateServerModel(model);
+        new LeaveCommand(1, "User1", "java").updateServerModel(model);
+
+        Command join = new JoinCommand(2, "User2", "java");
+        Broadcast expected = Broadcast.names(join, Arrays.asList("User2", "zed"), "zed");
+        assertEquals(expected, join.updateServerModel(model), "renamed owner, member gone");
+    }
+
+    @Test
+    public void testMalformedCommandsAnswerTheSender() {
+        model.registerUser(0);
+        model.registerUser(1);
+        new CreateCommand(0, "User0", "java", false).updateServerModel(model);
+        new JoinCommand(1, "User1", "java").updateServerModel(model);
+
+        Map<Integer, List<String>> nick = CommandParser.parse(0, "User0", "NICK")
+                .updateServerModel(model).getResponses(model);
+        assertEquals(Collections.singletonMap(0, Collections.singletonList(":User0 ERROR 401")),
+                nick, "bare NICK");
+        Map<Integer, List<String>> join = CommandParser.parse(1, "User1", "JOIN")
+                .updateServerModel(model).getResponses(model);
+        assertEquals(Collections.singletonMap(1, Collections.singletonList(":User1 ERROR 402")),
+                join, "bare JOIN");
+        Map<Integer, List<String>> message = CommandParser.parse(0, "User0", "MESG java")
+                .updateServerModel(model).getResponses(model);
+        assertEquals(Collections.singletonMap(0, Collections.singletonList(":User0 ERROR 400")),
+                message, "MESG without a payload, answered only to the sender");
+        assertEquals("User0", model.getNickname(0), "nickname unchanged");
+        assertEquals(2, model.getUsersInChannel("java").size(), "channel unchanged");
+    }
+
+    @Test
+    public void testPublishedUserAndChannelCounts() {
+        ServerModel sharded = new ServerModel(4);
+        sharded.registerUser(0);
+        sharded.registerUser(1);
+        new CreateCommand(0, "User0", "java", false).updateServerModel(sharded);
+        new CreateCommand(0, "User0", "python", false).updateServerModel(sharded);
+        new CreateCommand(1, "User1", "ocaml", false).updateServerModel(sharded);
+        assertEquals(2, sharded.getUserCount(), "two users");
+        assertEquals(3, sharded.getChannelCount(), "channels summed over shards");
+
+        new LeaveCommand(1, "User1", "ocaml").updateServerModel(sharded);
+        sharded.deregisterUser(0);
+        assertEquals(1, sharded.getUserCount(), "one user left");
+        assertEquals(0, sharded.getChannelCount(), "owners' channels removed");
+    }
+
+    @Test
+    public void testPublishedLargestChannels() {
+        ServerModel sharded = new ServerModel(4);
+        for (int i = 0; i < 4; i++) {
+            sharded.registerUser(i);
+        }
+        assertTrue(sharded.getLargestChannels().isEmpty(), "nothing published yet");
+        new CreateCommand(0, "User0", "java", false).updateServerModel(sharded);
+        new CreateCommand(0, "User0", "python", false).updateServerModel(sharded);
+        new CreateCommand(0, "User0", "ocaml", false).updateServerModel(sharded);
+        new JoinCommand(1, "User1", "java").updateServerModel(sharded);
+        new JoinCommand(2, "User2", "java").updateServerModel(sharded);
+        new JoinCommand(1, "User1", "ocaml").updateServerModel(sharded);
+        assertTrue(sharded.getLargestChannels().isEmpty(), "only published on request");
+
+        assertTrue(sharded.isLargestChannelsStale(), "channels changed");
+        sharded.publishLargestChannels(2);
+        assertFalse(sharded.isLargestChannelsStale(), "just published");
+        new MessageCommand(0, "User0", "java", "hi").updateServerModel(sharded);
+        assertFalse(sharded.isLargestChannelsStale(), "messages change no channel");
+        Map<String, Integer> largest = sharded.getLargestChannels();
+        assertEquals(Arrays.asList("java", "ocaml"), new ArrayList<>(largest.keySet()),
+                "largest first, across shards");
+        assertEquals(3, (int) largest.get("java"), "java's members");
+        assertEquals(2, (int) largest.get("ocaml"), "ocaml's members");
+
+        new LeaveCommand(2, "User2", "java").updateServerModel(sharded);
+        assertTrue(sharded.isLargestChannelsStale(), "java lost a user");
+    }
+}
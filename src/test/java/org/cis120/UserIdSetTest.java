@@ -0,0 +1,65 @@
+package org.cis120;
+
+import org.junit.jupiter.api.*;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserIdSetTest {
+
+    @Test
+    public void testAddContainsRemove() {
+        UserIdSet set = new UserIdSet();
+        assertTrue(set.add(3), "first add");
+        assertFalse(set.add(3), "duplicate add");
+        assertTrue(set.contains(3), "contains added ID");
+        assertFalse(set.contains(4), "does not contain other ID");
+        assertFalse(set.contains(-1), "never contains a negative ID");
+        assertEquals(1, set.size(), "one member");
+        assertTrue(set.remove(3), "remove present ID");
+        assertFalse(set.remove(3), "remove absent ID");
+        assertTrue(set.isEmpty(), "empty again");
+    }
+
+    @Test
+    public void testGrowsAndShrinksThroughManyIds() {
+        UserIdSet set = new UserIdSet();
+        for (int i = 0; i < 10000; i++) {
+            set.add(i);
+        }
+        assertEquals(10000, set.size(), "all added");
+        for (int i = 0; i < 10000; i += 2) {
+            set.remove(i);
+        }
+        assertEquals(5000, set.size(), "evens removed");
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(i % 2 == 1, set.contains(i), "membership of " + i);
+        }
+        int[] ids = set.toArray();
+        Arrays.sort(ids);
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(2 * i + 1, ids[i], "toArray holds the odd IDs");
+        }
+    }
+
+    @Test
+    public void testMatchesHashSetUnderRandomChurn() {
+        UserIdSet set = new UserIdSet();
+        Set<Integer> expected = new HashSet<>();
+        Random random = new Random(120);
+        for (int i = 0; i < 100000; i++) {
+            int id = random.nextInt(512);
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(id), set.add(id), "add " + id);
+            } else {
+                assertEquals(expected.remove(id), set.remove(id), "remove " + id);
+            }
+        }
+        assertEquals(expected.size(), set.size(), "same size");
+        for (int id = 0; id < 512; id++) {
+            assertEquals(expected.contains(id), set.contains(id), "contains " + id);
+        }
+    }
+}
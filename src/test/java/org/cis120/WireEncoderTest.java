@@ -0,0 +1,58 @@
+package org.cis120;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WireEncoderTest {
+
+    private static final String[] VALUES = { "User0", "java", "héllo wörld ✓", "", null };
+
+    @Test
+    public void testCommandsMatchFormat() {
+        for (String a : VALUES) {
+            for (String b : VALUES) {
+                assertEquals(String.format(":%s NICK %s", a, b), WireEncoder.nick(a, b), "NICK");
+                assertEquals(String.format(":%s JOIN %s", a, b), WireEncoder.join(a, b), "JOIN");
+                assertEquals(String.format(":%s LEAVE %s", a, b), WireEncoder.leave(a, b),
+                        "LEAVE");
+                assertEquals(String.format(":%s CREATE %s %d", a, b, 1),
+                        WireEncoder.create(a, b, true), "CREATE 1");
+                assertEquals(String.format(":%s CREATE %s %d", a, b, 0),
+                        WireEncoder.create(a, b, false), "CREATE 0");
+                for (String c : VALUES) {
+                    assertEquals(String.format(":%s MESG %s :%s", a, b, c),
+                            WireEncoder.message(a, b, c), "MESG");
+                    assertEquals(String.format(":%s INVITE %s %s", a, b, c),
+                            WireEncoder.invite(a, b, c), "INVITE");
+                    assertEquals(String.format(":%s KICK %s %s", a, b, c),
+                            WireEncoder.kick(a, b, c), "KICK");
+                    assertEquals(String.format(":%s NAMES %s :%s", a, b, c),
+                            WireEncoder.names(a, b, c), "NAMES");
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testResponsesMatchFormat() {
+        for (String a : VALUES) {
+            for (ServerResponse response : ServerResponse.values()) {
+                assertEquals(String.format(":%s ERROR %d", a, response.getCode()),
+                        WireEncoder.error(a, response.getCode()), "ERROR");
+            }
+            assertEquals(String.format(":%s CONNECT", a), WireEncoder.connected(a), "CONNECT");
+            assertEquals(String.format(":%s QUIT", a), WireEncoder.quit(a), "QUIT");
+        }
+    }
+
+    @Test
+    public void testLongLineDoesNotLeakIntoNextLine() {
+        StringBuilder message = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            message.append('x');
+        }
+        String line = WireEncoder.message("User0", "java", message.toString());
+        assertEquals(":User0 MESG java :".length() + 10000, line.length(), "long line");
+        assertEquals(":User0 JOIN java", WireEncoder.join("User0", "java"), "next line");
+    }
+}